@@ -0,0 +1,36 @@
+package com.czx.actuator;
+
+import com.czx.utils.UpstreamJournal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 最近的上游请求记录
+ * GET /actuator/upstreamjournal?limit=50&mallid=xxx&endpoint=list&failedOnly=true
+ */
+@Component
+@Endpoint(id = "upstreamjournal")
+public class UpstreamJournalEndpoint {
+
+    @Autowired
+    private UpstreamJournal journal;
+
+    @ReadOperation
+    public Map<String, Object> journal(@Nullable Integer limit, @Nullable String mallid,
+                                       @Nullable String endpoint, @Nullable Boolean failedOnly) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("capacity", journal.capacity());
+        result.put("total", journal.total());
+        result.put("exchanges", journal.recent(limit != null ? limit : 50, exchange ->
+                (mallid == null || mallid.equals(exchange.getMallid()))
+                        && (endpoint == null || endpoint.equals(exchange.getEndpoint()))
+                        && (failedOnly == null || !failedOnly || exchange.isFailed())));
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+package com.czx.actuator;
+
+import com.czx.config.TemuLimiterProperties;
+import com.czx.utils.UpstreamRateLimiter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 上游限流状态与运行时调整
+ * GET /actuator/upstreamlimiter 查看配置和各店铺当前并发上限、排队数
+ * POST /actuator/upstreamlimiter 调整限流参数，未传的参数保持不变
+ */
+@Component
+@Endpoint(id = "upstreamlimiter")
+public class UpstreamLimiterEndpoint {
+
+    @Autowired
+    private TemuLimiterProperties limiterProperties;
+
+    @Autowired
+    private UpstreamRateLimiter rateLimiter;
+
+    @ReadOperation
+    public Map<String, Object> limiter() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("config", limiterProperties);
+        result.put("malls", rateLimiter.snapshot());
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> update(@Nullable Boolean enabled, @Nullable Double permitsPerSecond, @Nullable Integer burst,
+                                      @Nullable Integer minConcurrency, @Nullable Integer maxConcurrency) {
+        if (enabled != null) {
+            limiterProperties.setEnabled(enabled);
+        }
+        if (permitsPerSecond != null) {
+            limiterProperties.setPermitsPerSecond(permitsPerSecond);
+        }
+        if (burst != null) {
+            limiterProperties.setBurst(burst);
+        }
+        if (minConcurrency != null) {
+            limiterProperties.setMinConcurrency(minConcurrency);
+        }
+        if (maxConcurrency != null) {
+            limiterProperties.setMaxConcurrency(maxConcurrency);
+        }
+        return limiter();
+    }
+}
@@ -0,0 +1,52 @@
+package com.czx.actuator;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 上游连接池统计，访问 /actuator/upstreampool 查看连接池总体和每个主机的连接使用情况
+ */
+@Component
+@Endpoint(id = "upstreampool")
+public class UpstreamPoolEndpoint {
+
+    @Autowired
+    private PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager;
+
+    @ReadOperation
+    public Map<String, Object> pool() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("async", poolStats(upstreamAsyncConnectionManager));
+        return result;
+    }
+
+    private Map<String, Object> poolStats(ConnPoolControl<HttpRoute> connectionManager) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("total", toMap(connectionManager.getTotalStats()));
+
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            routes.put(route.getTargetHost().toURI(), toMap(connectionManager.getStats(route)));
+        }
+        result.put("routes", routes);
+        return result;
+    }
+
+    private Map<String, Object> toMap(PoolStats stats) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("leased", stats.getLeased());
+        map.put("available", stats.getAvailable());
+        map.put("pending", stats.getPending());
+        map.put("max", stats.getMax());
+        return map;
+    }
+}
@@ -5,7 +5,6 @@ import com.czx.mapper.UserMapper;
 import com.czx.pojo.User;
 import com.czx.service.UserService;
 import io.jsonwebtoken.Claims;
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -15,6 +14,8 @@ import com.czx.pojo.OperateLog;
 import com.czx.utils.JwtUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -27,14 +28,14 @@ public class LogAspect {
     private OperateLogMapper operateLogMapper;
     @Autowired
     private UserMapper userMapper;
-    @Autowired
-    private HttpServletRequest request;
     @Around("execution(* com.czx.service.*.*(..))")//切入点表达式
     public Object recordTime(ProceedingJoinPoint joinPoint) throws Throwable {
 
         //操作人ID - 当前登录员工ID
         //获取请求头中的jwt令牌, 解析令牌
-        String jwt = request.getHeader("token");
+        //后台线程（缓存刷新等）调用时没有请求上下文，按匿名记录
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        String jwt = attributes != null ? attributes.getRequest().getHeader("token") : null;
         Integer userId = null;
         String username = null;
         if (jwt != null) {
@@ -0,0 +1,140 @@
+package com.czx.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.net.ssl.SSLContext;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 上游HTTP客户端配置
+ * 使用Apache HttpClient 5连接池替代JDK默认实现，支持长连接复用、按主机限制连接数、空闲回收和TLS会话复用
+ * 异步客户端基于NIO，少量I/O线程即可承载大量并发上游请求
+ */
+@Slf4j
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * 共享的SSLContext，同一个上下文内的TLS会话可以被复用，避免重复完整握手
+     */
+    @Bean
+    public SSLContext upstreamSslContext(TemuHttpProperties properties) {
+        SSLContext sslContext = SSLContexts.createSystemDefault();
+        sslContext.getClientSessionContext().setSessionCacheSize(properties.getTlsSessionCacheSize());
+        sslContext.getClientSessionContext().setSessionTimeout(properties.getTlsSessionTimeoutSeconds());
+        return sslContext;
+    }
+
+    /**
+     * 上游连接池，NetworkRequest的同步和异步请求都经由此连接池发出
+     * 开启http2-enabled后通过ALPN协商HTTP/2，同一主机的并发请求在一条连接上多路复用
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager(TemuHttpProperties properties, SSLContext upstreamSslContext) {
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setTlsStrategy(ClientTlsStrategyBuilder.create()
+                        .setSslContext(upstreamSslContext)
+                        .buildAsync())
+                .setMaxConnTotal(properties.getMaxTotal())
+                .setMaxConnPerRoute(properties.getMaxPerRoute())
+                .setDefaultConnectionConfig(connectionConfig(properties))
+                .setDefaultTlsConfig(TlsConfig.custom()
+                        .setHandshakeTimeout(Timeout.ofMilliseconds(properties.getConnectTimeout()))
+                        .setVersionPolicy(properties.isHttp2Enabled() ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_1)
+                        .build())
+                .build();
+
+        applyMaxPerHost(connectionManager, properties);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpAsyncClient upstreamAsyncHttpClient(TemuHttpProperties properties, PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager) {
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(upstreamAsyncConnectionManager)
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(properties.getIoThreads())
+                        .build())
+                .setDefaultRequestConfig(requestConfig(properties))
+                .evictIdleConnections(TimeValue.ofSeconds(properties.getIdleEvictSeconds()))
+                .evictExpiredConnections()
+                // 重试由UpstreamResilience统一负责，避免客户端内置重试叠加
+                .disableAutomaticRetries()
+                .build();
+        client.start();
+        return client;
+    }
+
+    /**
+     * 响应解码线程池，避免在I/O线程上做解压和JSON解析
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService upstreamDecodeExecutor(TemuHttpProperties properties) {
+        return Executors.newFixedThreadPool(properties.getDecodeThreads(), new CustomizableThreadFactory("upstream-decode-"));
+    }
+
+    /**
+     * 上游请求的定时调度线程，用于限流等待等延迟任务，延迟期间不占用线程
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService upstreamScheduler() {
+        return Executors.newScheduledThreadPool(1, new CustomizableThreadFactory("upstream-scheduler-"));
+    }
+
+    /**
+     * 连接池指标，通过 /actuator/metrics/httpcomponents.httpclient.pool.* 查看
+     */
+    @Bean
+    public MeterBinder upstreamAsyncPoolMetrics(PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(upstreamAsyncConnectionManager, "temu-upstream-async");
+    }
+
+    private ConnectionConfig connectionConfig(TemuHttpProperties properties) {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(properties.getConnectTimeout()))
+                .setSocketTimeout(Timeout.ofMilliseconds(properties.getReadTimeout()))
+                .setTimeToLive(TimeValue.ofSeconds(properties.getTimeToLiveSeconds()))
+                .setValidateAfterInactivity(TimeValue.ofMilliseconds(properties.getValidateAfterInactivity()))
+                .build();
+    }
+
+    private RequestConfig requestConfig(TemuHttpProperties properties) {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(properties.getConnectionRequestTimeout()))
+                .setResponseTimeout(Timeout.ofMilliseconds(properties.getReadTimeout()))
+                .build();
+    }
+
+    /**
+     * 按主机单独设置最大连接数
+     */
+    private void applyMaxPerHost(ConnPoolControl<HttpRoute> connectionManager, TemuHttpProperties properties) {
+        properties.getMaxPerHost().forEach((host, max) -> {
+            connectionManager.setMaxPerRoute(new HttpRoute(new HttpHost("https", host, 443)), max);
+            log.info("上游主机 {} 最大连接数: {}", host, max);
+        });
+    }
+}
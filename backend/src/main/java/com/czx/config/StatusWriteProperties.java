@@ -0,0 +1,23 @@
+package com.czx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 处理状态写入配置
+ * 开启write-behind后状态更新先写入内存缓冲立即返回，同一商品只保留最后一次写入，按条数或时间批量落库
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "temu.status-write")
+public class StatusWriteProperties {
+    // 是否开启write-behind，关闭时每次更新同步写库
+    private boolean writeBehind = false;
+    // 缓冲条数达到该值时立即落库
+    private int flushBatchSize = 500;
+    // 定时落库间隔（毫秒）
+    private long flushIntervalMs = 1000;
+    // 缓冲条数上限，超出后新的更新改为同步写库
+    private int maxPending = 100000;
+}
@@ -0,0 +1,41 @@
+package com.czx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * TEMU接口结果的内存缓存配置
+ * 过期后在stale时间内仍先返回旧数据并在后台刷新，超过stale时间才同步请求上游
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "temu.cache")
+public class TemuCacheProperties {
+    // 违规商品列表分页缓存时间（秒），0表示不缓存
+    private long complianceTtlSeconds = 30;
+    // 违规商品列表过期后仍可返回旧数据的时间（秒）
+    private long complianceStaleSeconds = 300;
+    // 违规商品列表缓存最多保存的商品条数（所有块合计）
+    private long complianceMaxItems = 50000;
+    // 违规商品列表按该大小对齐分块请求上游并缓存，0表示按前端的每页条数请求
+    private int complianceBlockSize = 100;
+    // 处理状态缓存的条目上限（所有用户合计），0表示不缓存
+    private long statusMaxEntries = 2_000_000;
+    // 处理状态缓存的重新加载间隔（秒），用于同步其他实例或直接改库的变更
+    private long statusTtlSeconds = 3600;
+    // 返回一页违规商品后预取之后的页数，0表示不预取
+    private int compliancePrefetchPages = 2;
+    // 预取线程数（低优先级）
+    private int prefetchThreads = 1;
+    // 预取排队上限，超出时丢弃
+    private int prefetchQueueCapacity = 16;
+    // 后台刷新线程数
+    private int refreshThreads = 2;
+    // 后台刷新排队上限，超出时本次不刷新，继续返回旧数据
+    private int refreshQueueCapacity = 100;
+    // 下架用的商品名称和图片缓存时间（秒），0表示不缓存
+    private long productInfoTtlSeconds = 3600;
+    // 商品名称和图片缓存的条目上限（SKC和SPU各自计算）
+    private long productInfoMaxEntries = 100000;
+}
@@ -0,0 +1,52 @@
+package com.czx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TEMU上游HTTP客户端配置
+ * 连接池大小、超时时间均可在application.yml中通过temu.http.*调整
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "temu.http")
+public class TemuHttpProperties {
+    // 上游地址，压测时可指向本地模拟服务
+    private String baseUrl = "https://agentseller.temu.com";
+    // 连接池最大连接数
+    private int maxTotal = 200;
+    // 每个主机默认最大连接数
+    private int maxPerRoute = 50;
+    // 按主机单独设置最大连接数，例如 agentseller.temu.com: 80
+    private Map<String, Integer> maxPerHost = new HashMap<>();
+    // 建立连接超时（毫秒）
+    private int connectTimeout = 3000;
+    // 等待响应超时（毫秒）
+    private int readTimeout = 15000;
+    // 从连接池获取连接的超时（毫秒）
+    private int connectionRequestTimeout = 2000;
+    // 空闲连接回收时间（秒）
+    private int idleEvictSeconds = 30;
+    // 连接最长存活时间（秒）
+    private int timeToLiveSeconds = 300;
+    // 连接空闲超过该时间后复用前先校验（毫秒）
+    private int validateAfterInactivity = 2000;
+    // TLS会话缓存大小，用于会话复用减少握手
+    private int tlsSessionCacheSize = 1000;
+    // TLS会话缓存超时（秒）
+    private int tlsSessionTimeoutSeconds = 3600;
+    // 是否启用HTTP/2（通过ALPN协商，服务端支持时同一连接多路复用）
+    private boolean http2Enabled = false;
+    // 异步客户端I/O线程数
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    // 响应解码线程数，解压和JSON解析不占用I/O线程
+    private int decodeThreads = Runtime.getRuntime().availableProcessors();
+    // 上游请求记录保留的条数
+    private int journalCapacity = 512;
+    // 请求记录中请求体、响应体保留的字节数
+    private int journalPreviewBytes = 1024;
+}
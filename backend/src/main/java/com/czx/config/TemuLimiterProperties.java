@@ -0,0 +1,39 @@
+package com.czx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上游限流配置（按mallid分别限流）
+ * 令牌桶控制请求速率，AIMD自适应并发：被限流时并发上限按比例收缩，请求成功后逐步恢复
+ * 运行时可通过 /actuator/upstreamlimiter 调整
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "temu.limiter")
+public class TemuLimiterProperties {
+    // 是否启用限流
+    private boolean enabled = true;
+    // 每个店铺每秒请求数，<=0表示不限速
+    private double permitsPerSecond = 10;
+    // 令牌桶容量（允许的突发请求数）
+    private int burst = 20;
+    // 初始并发上限
+    private int initialConcurrency = 8;
+    // 并发上限的下限
+    private int minConcurrency = 1;
+    // 并发上限的上限
+    private int maxConcurrency = 32;
+    // 被限流时并发上限的收缩比例
+    private double decreaseFactor = 0.5;
+    // 两次收缩之间的最小间隔（毫秒），避免同一波限流被重复计算
+    private long decreaseCooldownMs = 1000;
+    // 等待令牌或并发名额的最长时间（毫秒）
+    private long acquireTimeoutMs = 30000;
+    // 业务响应success=false且消息包含以下关键字时视为被限流
+    private List<String> throttleKeywords = new ArrayList<>(List.of("频繁", "限流", "稍后再试", "too many", "rate limit"));
+}
@@ -0,0 +1,42 @@
+package com.czx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 批量下架执行配置
+ * 所有用户共用一个固定大小的线程池；每个用户同时在查询、预检查、发送阶段的商品数另有上限
+ * 单个商品按阶段流水线执行，各阶段的并发和队列独立配置，等待下架结果的商品不占用户并发
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "temu.offline")
+public class TemuOfflineProperties {
+    // 下架执行器的线程数
+    private int maxConcurrency = 32;
+    // 单个用户同时在查询、预检查、发送阶段的商品数，请求中的max_threads不能超过该值
+    private int perUserConcurrency = 8;
+    // 所有用户排队中的商品数上限，超出时拒绝新的批量下架
+    private int maxQueuedTasks = 20000;
+    // 单个异步下架任务最多包含的商品数
+    private int maxJobItems = 20000;
+    // 异步任务的下架结果攒够该条数或间隔flushIntervalMs后批量写库
+    private int resultFlushSize = 50;
+    private long resultFlushIntervalMs = 1000;
+    // 异步任务的租约：执行实例每隔jobHeartbeatIntervalMs为自己的任务续约，
+    // 超过jobLeaseSeconds未续约的未结束任务视为执行实例已停止，由任一实例标记为失败
+    private long jobHeartbeatIntervalMs = 15000;
+    private long jobLeaseSeconds = 60;
+    // 查询下架结果的间隔（毫秒），同一会话的所有商品共用一个轮询
+    private long resultPollIntervalMs = 1000;
+    // 等待单个商品下架结果的超时（毫秒）
+    private long resultTimeoutMs = 10000;
+    // 流水线各阶段同时执行的商品数：查询商品信息、预检查、发送下架消息、等待下架结果
+    private int infoWorkers = 32;
+    private int precheckWorkers = 32;
+    private int sendWorkers = 32;
+    private int confirmWorkers = 1024;
+    // 流水线每个阶段的排队上限，排满后商品停在上一阶段
+    private int stageQueueCapacity = 64;
+}
@@ -0,0 +1,40 @@
+package com.czx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 上游重试与熔断配置
+ * 只读接口失败时按指数退避加随机抖动重试，每个接口的重试量受重试预算限制；
+ * 每个店铺一个熔断器，上游持续故障时快速失败
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "temu.resilience")
+public class TemuResilienceProperties {
+    // 最多尝试次数（含首次请求）
+    private int maxAttempts = 3;
+    // 首次重试的退避时间（毫秒）
+    private long baseDelayMs = 200;
+    // 退避时间上限（毫秒）
+    private long maxDelayMs = 5000;
+    // 退避倍数
+    private double multiplier = 2.0;
+    // 重试预算：每个请求积累的重试额度，0.2表示重试量最多为请求量的20%
+    private double retryBudgetRatio = 0.2;
+    // 重试预算：每秒保底的重试次数，低流量时也能重试
+    private double retryBudgetMinPerSecond = 1;
+    // 重试预算最多积累的额度
+    private int retryBudgetMaxBalance = 50;
+    // 熔断统计窗口（最近N次请求）
+    private int breakerWindowSize = 50;
+    // 窗口内最少请求数，达到后才计算失败率
+    private int breakerMinimumCalls = 20;
+    // 失败率阈值（百分比），超过后熔断
+    private int breakerFailureRateThreshold = 50;
+    // 熔断持续时间（毫秒），之后进入半开状态试探
+    private long breakerOpenMs = 30000;
+    // 半开状态允许的试探请求数
+    private int breakerHalfOpenCalls = 3;
+}
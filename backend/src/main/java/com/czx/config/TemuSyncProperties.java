@@ -0,0 +1,31 @@
+package com.czx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 违规商品后台同步配置
+ * 开启后定时把各店铺的违规商品列表同步到compliance_item表，列表的筛选和分页直接查本地库
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "temu.sync")
+public class TemuSyncProperties {
+    // 是否开启后台同步，需要先执行sql/compliance_item.sql建表
+    private boolean enabled = false;
+    // 两次同步之间的间隔（秒）
+    private long intervalSeconds = 600;
+    // 启动后首次同步的延迟（秒）
+    private long initialDelaySeconds = 30;
+    // 同步时每页拉取的条数
+    private int pageSize = 100;
+    // 同时同步的店铺数
+    private int mallConcurrency = 2;
+    // 每个店铺同时请求的页数
+    private int pageConcurrency = 4;
+    // 每次批量写库的条数
+    private int writeBatchSize = 200;
+    // 上次同步成功超过该时间（秒）后不再使用本地数据，改为直接请求上游
+    private long serveMaxAgeSeconds = 1800;
+}
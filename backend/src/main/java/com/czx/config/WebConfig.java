@@ -2,9 +2,7 @@ package com.czx.config;
 
 import com.czx.interceptor.LoginCheckInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -16,11 +14,6 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private LoginCheckInterceptor loginCheckInterceptor;
 
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
-
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         // 登录检查拦截器
@@ -41,6 +34,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOrigins("*")// 所有的外部域都可跨域访问。 如果是localhost则很难配置，因为在跨域请求的时候，外部域的解析可能是localhost、127.0.0.1、主机名
                 .allowedMethods("POST", "GET", "PUT", "OPTIONS", "DELETE")// 当前站点支持的跨域请求类型是什么
                 .allowedHeaders("*")
+                .exposedHeaders("ETag")// 列表接口的条件请求需要前端读到ETag
                 .maxAge(3600);// 超时时长设置为1小时。 时间单位是秒。
     }
 }
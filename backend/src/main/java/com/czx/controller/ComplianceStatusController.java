@@ -1,12 +1,14 @@
 package com.czx.controller;
 
 import com.czx.pojo.Result;
+import com.czx.pojo.StatusBatchRequest;
 import com.czx.service.ComplianceStatusService;
 import com.czx.utils.RequestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -15,6 +17,9 @@ public class ComplianceStatusController {
 
     @Autowired
     private ComplianceStatusService complianceStatusService;
+    
+    // 批量接口单次最多更新的商品数
+    private static final int MAX_BATCH_ITEMS = 5000;
 
     @PostMapping("/status")
     public Result updateStatus(@RequestBody Map<String, Object> params, HttpServletRequest request) {
@@ -44,4 +49,41 @@ public class ComplianceStatusController {
             return Result.error("状态更新失败: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+    
+    @PostMapping("/status/batch")
+    public Result updateStatusBatch(@RequestBody StatusBatchRequest params, HttpServletRequest request) {
+        // 检查用户是否已认证
+        if (!RequestUtils.isAuthenticated(request)) {
+            return Result.error("用户未认证");
+        }
+        
+        // 获取用户ID
+        Integer userId = RequestUtils.getUserId(request);
+        if (userId == null) {
+            return Result.error("无法获取用户信息");
+        }
+        
+        if (params.getItems() == null || params.getItems().isEmpty()) {
+            return Result.error("商品列表不能为空");
+        }
+        if (params.getItems().size() > MAX_BATCH_ITEMS) {
+            return Result.error("单次最多更新" + MAX_BATCH_ITEMS + "个商品");
+        }
+        
+        // 同一商品出现多次时以最后一次为准
+        Map<Long, Integer> statuses = new LinkedHashMap<>();
+        for (StatusBatchRequest.Item item : params.getItems()) {
+            if (item.getProductId() == null || item.getStatus() == null) {
+                return Result.error("商品ID和状态不能为空");
+            }
+            statuses.put(item.getProductId(), item.getStatus());
+        }
+        
+        try {
+            int updated = complianceStatusService.updateStatusBatch(userId, statuses);
+            return Result.success(Map.of("updated", updated));
+        } catch (Exception e) {
+            return Result.error("状态更新失败: " + e.getMessage());
+        }
+    }
+}
@@ -5,10 +5,15 @@ import com.czx.pojo.OfflineRequest;
 import com.czx.pojo.ProductQueryRequest;
 import com.czx.service.TemuService;
 import com.czx.utils.RequestUtils;
+import com.czx.utils.ETagUtils;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/temu")
 public class TemuController {
@@ -16,12 +21,52 @@ public class TemuController {
     @Autowired
     private TemuService temuService;
     
+    @GetMapping("/compliance/page")
+    public Result getCompliancePage(
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "20") int page_size,
+            @RequestParam(required = false) Integer violation_type,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        
+        // 检查用户是否已认证
+        if (!RequestUtils.isAuthenticated(request)) {
+            return Result.error("用户未认证");
+        }
+        
+        // 获取用户ID
+        Integer userId = RequestUtils.getUserId(request);
+        if (userId == null) {
+            return Result.error("无法获取用户信息");
+        }
+        
+        try {
+            // 当页商品和总数来自同一次上游请求
+            var result = temuService.getCompliancePage(userId, page, page_size, violation_type);
+            if ((Boolean) result.get("success")) {
+                // 内容未变化时返回304，不再序列化
+                if (ETagUtils.checkNotModified(request, response, (String) result.get("etag"))) {
+                    return null;
+                }
+                Map<String, Object> data = new HashMap<>();
+                data.put("items", result.get("items"));
+                data.put("total", result.get("total"));
+                return Result.success(data);
+            } else {
+                return Result.error((String) result.get("error"));
+            }
+        } catch (Exception e) {
+            return Result.error("获取违规列表失败: " + e.getMessage());
+        }
+    }
+    
     @GetMapping("/compliance/list")
     public Result getComplianceList(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "20") int page_size,
             @RequestParam(required = false) Integer violation_type,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) {
         
         // 检查用户是否已认证
         if (!RequestUtils.isAuthenticated(request)) {
@@ -38,6 +83,10 @@ public class TemuController {
             // 调用Service层，传递用户ID和违规类型
             var result = temuService.getComplianceList(userId, page, page_size, violation_type);
             if ((Boolean) result.get("success")) {
+                // 内容未变化时返回304，不再序列化
+                if (ETagUtils.checkNotModified(request, response, (String) result.get("etag"))) {
+                    return null;
+                }
                 return Result.success(result.get("items"));
             } else {
                 return Result.error((String) result.get("error"));
@@ -51,6 +100,7 @@ public class TemuController {
     public Result getComplianceTotal(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "20") int pageSize,
+            @RequestParam(required = false) Integer page_size,
             @RequestParam(required = false) Integer violation_type,
             HttpServletRequest request) {
         
@@ -67,7 +117,9 @@ public class TemuController {
         
         try {
             // 调用Service层，传递用户ID和违规类型
-            Integer total = temuService.getComplianceTotal(userId, page, pageSize, violation_type);
+            // 前端传的是page_size，与列表接口保持一致才能共用同一次上游请求
+            int size = page_size != null ? page_size : pageSize;
+            Integer total = temuService.getComplianceTotal(userId, page, size, violation_type);
             return Result.success(total);
         } catch (Exception e) {
             return Result.error("获取违规总数失败: " + e.getMessage());
@@ -75,7 +127,8 @@ public class TemuController {
     }
     
     @PostMapping("/seller/product")
-    public Result getProducts(@RequestBody ProductQueryRequest request, HttpServletRequest httpRequest) {
+    public Result getProducts(@RequestBody ProductQueryRequest request, HttpServletRequest httpRequest,
+                              HttpServletResponse httpResponse) {
         // 检查用户是否已认证
         if (!RequestUtils.isAuthenticated(httpRequest)) {
             return Result.error("用户未认证");
@@ -97,6 +150,10 @@ public class TemuController {
                 request.getPageSize()
             );
             if ((Boolean) result.get("success")) {
+                // 查询结果未变化时返回304，前端沿用上次的数据
+                if (ETagUtils.checkNotModified(httpRequest, httpResponse, (String) result.get("etag"))) {
+                    return null;
+                }
                 return Result.success(result.get("items"));
             } else {
                 return Result.error((String) result.get("error"));
@@ -121,7 +178,7 @@ public class TemuController {
         
         try {
             // 调用Service层，传递用户ID
-            var result = temuService.offlineProducts(userId, request.getProductIds(), request.getMax_threads());
+            var result = temuService.offlineProducts(userId, request.getProductIds(), request.getMax_threads(), request.getSpu_ids());
             if ((Boolean) result.get("success")) {
                 return Result.success(result);
             } else {
@@ -132,6 +189,110 @@ public class TemuController {
         }
     }
     
+    /**
+     * 提交异步批量下架任务，立即返回任务ID，进度通过任务状态接口查询
+     */
+    @PostMapping("/seller/offline/jobs")
+    public Result submitOfflineJob(@RequestBody OfflineRequest request, HttpServletRequest httpRequest) {
+        // 检查用户是否已认证
+        if (!RequestUtils.isAuthenticated(httpRequest)) {
+            return Result.error("用户未认证");
+        }
+        
+        // 获取用户ID
+        Integer userId = RequestUtils.getUserId(httpRequest);
+        if (userId == null) {
+            return Result.error("无法获取用户信息");
+        }
+        
+        try {
+            var result = temuService.submitOfflineJob(userId, request.getProductIds(), request.getMax_threads(), request.getSpu_ids());
+            if ((Boolean) result.get("success")) {
+                return Result.success(result);
+            } else {
+                return Result.error((String) result.get("error"));
+            }
+        } catch (Exception e) {
+            return Result.error("提交批量下架任务失败: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/seller/offline/jobs/{jobId}")
+    public Result getOfflineJob(@PathVariable Long jobId, HttpServletRequest request) {
+        // 检查用户是否已认证
+        if (!RequestUtils.isAuthenticated(request)) {
+            return Result.error("用户未认证");
+        }
+        
+        // 获取用户ID
+        Integer userId = RequestUtils.getUserId(request);
+        if (userId == null) {
+            return Result.error("无法获取用户信息");
+        }
+        
+        try {
+            var job = temuService.getOfflineJob(userId, jobId);
+            if (job == null) {
+                return Result.error("任务不存在");
+            }
+            return Result.success(job);
+        } catch (Exception e) {
+            return Result.error("获取批量下架任务失败: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/seller/offline/jobs/{jobId}/items")
+    public Result getOfflineJobItems(
+            @PathVariable Long jobId,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "20") int page_size,
+            @RequestParam(required = false) String status,
+            HttpServletRequest request) {
+        // 检查用户是否已认证
+        if (!RequestUtils.isAuthenticated(request)) {
+            return Result.error("用户未认证");
+        }
+        
+        // 获取用户ID
+        Integer userId = RequestUtils.getUserId(request);
+        if (userId == null) {
+            return Result.error("无法获取用户信息");
+        }
+        
+        try {
+            var items = temuService.getOfflineJobItems(userId, jobId, status, Math.max(1, page), Math.max(1, Math.min(page_size, 500)));
+            if (items == null) {
+                return Result.error("任务不存在");
+            }
+            return Result.success(items);
+        } catch (Exception e) {
+            return Result.error("获取批量下架结果失败: " + e.getMessage());
+        }
+    }
+    
+    @PostMapping("/seller/offline/jobs/{jobId}/cancel")
+    public Result cancelOfflineJob(@PathVariable Long jobId, HttpServletRequest request) {
+        // 检查用户是否已认证
+        if (!RequestUtils.isAuthenticated(request)) {
+            return Result.error("用户未认证");
+        }
+        
+        // 获取用户ID
+        Integer userId = RequestUtils.getUserId(request);
+        if (userId == null) {
+            return Result.error("无法获取用户信息");
+        }
+        
+        try {
+            if (!temuService.cancelOfflineJob(userId, jobId)) {
+                return Result.error("任务不存在或已结束");
+            }
+            return Result.success();
+        } catch (Exception e) {
+            return Result.error("取消批量下架任务失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取违规描述选项列表
      * @param request HTTP请求
@@ -0,0 +1,38 @@
+package com.czx.mapper;
+
+import com.czx.pojo.ComplianceMirrorItem;
+import com.czx.pojo.ComplianceSyncState;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+@Mapper
+public interface ComplianceMirrorMapper {
+
+    /**
+     * 多行upsert，首次同步时间只在插入时写入
+     */
+    void upsertBatch(@Param("items") List<ComplianceMirrorItem> items);
+
+    @Select("SELECT spu_id, content_hash FROM compliance_item WHERE mallid = #{mallid}")
+    List<ComplianceMirrorItem> findHashesByMallid(@Param("mallid") String mallid);
+
+    void deleteBySpuIds(@Param("mallid") String mallid, @Param("spuIds") List<Long> spuIds);
+
+    /**
+     * 分页查询镜像并关联当前用户的处理状态
+     */
+    List<ComplianceMirrorItem> findPage(@Param("userId") Integer userId, @Param("mallid") String mallid,
+                                        @Param("violationType") Integer violationType,
+                                        @Param("offset") int offset, @Param("limit") int limit);
+
+    int count(@Param("mallid") String mallid, @Param("violationType") Integer violationType);
+
+    @Select("SELECT * FROM compliance_sync_state WHERE mallid = #{mallid}")
+    ComplianceSyncState findState(@Param("mallid") String mallid);
+
+    @Insert("INSERT INTO compliance_sync_state(mallid, total, last_success_at, last_error) " +
+            "VALUES(#{mallid}, #{total}, #{lastSuccessAt}, #{lastError}) " +
+            "ON DUPLICATE KEY UPDATE total = #{total}, last_success_at = #{lastSuccessAt}, last_error = #{lastError}")
+    void saveState(ComplianceSyncState state);
+}
@@ -2,6 +2,8 @@ package com.czx.mapper;
 
 import com.czx.pojo.ComplianceStatus;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -13,9 +15,29 @@ public interface ComplianceStatusMapper {
             "ON DUPLICATE KEY UPDATE status = #{status}, processed_time = NOW()")
     void saveOrUpdate(ComplianceStatus status);
     
+    /**
+     * 多行upsert，一条语句写入一批商品的状态
+     */
+    @Insert("<script>INSERT INTO compliance_status(user_id, product_id, status, processed_time) VALUES " +
+            "<foreach collection='items' item='item' separator=','>(#{userId}, #{item.productId}, #{item.status}, NOW())</foreach> " +
+            "ON DUPLICATE KEY UPDATE status = VALUES(status), processed_time = NOW()</script>")
+    void saveOrUpdateBatch(@Param("userId") Integer userId, @Param("items") List<ComplianceStatus> items);
+    
     @Select("SELECT * FROM compliance_status WHERE user_id = #{userId} AND product_id = #{productId}")
     ComplianceStatus findByUserIdAndProductId(@Param("userId") Integer userId, @Param("productId") Long productId);
     
-    @Select("SELECT * FROM compliance_status WHERE user_id = #{userId} AND product_id IN (${productIds})")
-    List<ComplianceStatus> findByUserIdAndProductIds(@Param("userId") Integer userId, @Param("productIds") String productIds);
+    @Select("<script>SELECT product_id, status FROM compliance_status WHERE user_id = #{userId} AND product_id IN " +
+            "<foreach collection='productIds' item='productId' open='(' separator=',' close=')'>#{productId}</foreach></script>")
+    List<ComplianceStatus> findByUserIdAndProductIds(@Param("userId") Integer userId, @Param("productIds") List<Long> productIds);
+    
+    @Select("SELECT COUNT(*) FROM compliance_status WHERE user_id = #{userId}")
+    long countByUserId(@Param("userId") Integer userId);
+    
+    /**
+     * 流式读取用户的全部处理状态，不把整个结果集读进内存
+     */
+    @Select("SELECT product_id, status FROM compliance_status WHERE user_id = #{userId}")
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    @ResultType(ComplianceStatus.class)
+    void streamByUserId(@Param("userId") Integer userId, ResultHandler<ComplianceStatus> handler);
 }
\ No newline at end of file
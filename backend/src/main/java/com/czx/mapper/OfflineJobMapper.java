@@ -0,0 +1,84 @@
+package com.czx.mapper;
+
+import com.czx.pojo.OfflineJob;
+import com.czx.pojo.OfflineJobItem;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+@Mapper
+public interface OfflineJobMapper {
+
+    @Insert("INSERT INTO offline_job(user_id, mallid, status, total, max_threads, owner, heartbeat_at) " +
+            "VALUES(#{userId}, #{mallid}, #{status}, #{total}, #{maxThreads}, #{owner}, NOW())")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    void insertJob(OfflineJob job);
+
+    @Select("SELECT * FROM offline_job WHERE id = #{id} AND user_id = #{userId}")
+    OfflineJob findByIdAndUserId(@Param("id") Long id, @Param("userId") Integer userId);
+
+    @Update("UPDATE offline_job SET status = 'RUNNING', started_at = NOW() WHERE id = #{id} AND status = 'PENDING'")
+    int markRunning(@Param("id") Long id);
+
+    @Update("UPDATE offline_job SET success_count = success_count + #{success}, failed_count = failed_count + #{failed} " +
+            "WHERE id = #{id}")
+    void addProgress(@Param("id") Long id, @Param("success") int success, @Param("failed") int failed);
+
+    /**
+     * 结束任务，已取消的任务保持取消状态
+     */
+    @Update("UPDATE offline_job SET status = IF(status = 'CANCELLED', 'CANCELLED', #{status}), error = #{error}, " +
+            "finished_at = NOW() WHERE id = #{id}")
+    void finish(@Param("id") Long id, @Param("status") String status, @Param("error") String error);
+
+    @Update("UPDATE offline_job SET status = 'CANCELLED' WHERE id = #{id} AND user_id = #{userId} " +
+            "AND status IN ('PENDING', 'RUNNING')")
+    int cancel(@Param("id") Long id, @Param("userId") Integer userId);
+
+    /**
+     * 为本实例执行中的任务续约
+     */
+    @Update("<script>UPDATE offline_job SET heartbeat_at = NOW() WHERE owner = #{owner} AND finished_at IS NULL AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int renewLease(@Param("owner") String owner, @Param("ids") List<Long> ids);
+
+    /**
+     * 超过leaseSeconds未续约的未结束任务，其执行实例已停止
+     */
+    @Select("SELECT id FROM offline_job WHERE finished_at IS NULL " +
+            "AND (heartbeat_at IS NULL OR heartbeat_at < NOW() - INTERVAL #{leaseSeconds} SECOND)")
+    List<Long> findExpiredIds(@Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * 租约仍已过期时才结束任务，避免与刚续约的执行实例冲突；已取消的任务保持取消状态
+     */
+    @Update("UPDATE offline_job SET status = IF(status = 'CANCELLED', 'CANCELLED', 'FAILED'), error = #{error}, " +
+            "finished_at = NOW() WHERE id = #{id} AND finished_at IS NULL " +
+            "AND (heartbeat_at IS NULL OR heartbeat_at < NOW() - INTERVAL #{leaseSeconds} SECOND)")
+    int failExpired(@Param("id") Long id, @Param("leaseSeconds") long leaseSeconds, @Param("error") String error);
+
+    /**
+     * 多行插入任务明细
+     */
+    void insertItems(@Param("jobId") Long jobId, @Param("items") List<OfflineJobItem> items);
+
+    /**
+     * 多行写入下架结果，按(job_id, product_id)覆盖
+     */
+    void saveResults(@Param("jobId") Long jobId, @Param("items") List<OfflineJobItem> items);
+
+    @Update("UPDATE offline_job_item SET status = 'CANCELLED' WHERE job_id = #{jobId} AND status = 'PENDING'")
+    void cancelPendingItems(@Param("jobId") Long jobId);
+
+    List<OfflineJobItem> findItems(@Param("jobId") Long jobId, @Param("status") String status,
+                                   @Param("offset") int offset, @Param("limit") int limit);
+
+    int countItems(@Param("jobId") Long jobId, @Param("status") String status);
+
+    /**
+     * 所有SKC都下架成功的违规商品
+     */
+    @Select("SELECT spu_id FROM offline_job_item WHERE job_id = #{jobId} AND spu_id IS NOT NULL " +
+            "GROUP BY spu_id HAVING SUM(status <> 'SUCCESS') = 0")
+    List<Long> findFullySucceededSpuIds(@Param("jobId") Long jobId);
+}
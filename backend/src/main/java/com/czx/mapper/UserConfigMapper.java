@@ -4,9 +4,12 @@ import com.czx.pojo.UserConfig;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 @Mapper
 public interface UserConfigMapper {
     UserConfig findByUserId(Integer userId);
+    List<UserConfig> findAllWithMall();
     int insert(UserConfig userConfig);
     int update(UserConfig userConfig);
     int deleteByUserId(Integer userId);
@@ -0,0 +1,24 @@
+package com.czx.pojo;
+
+import lombok.Data;
+
+/**
+ * 违规商品本地镜像（compliance_item表）
+ */
+@Data
+public class ComplianceMirrorItem {
+    private String mallid;
+    private Long spuId;
+    private String goodsName;
+    private String goodsImgUrl;
+    private Integer siteNum;
+    // 违规站点ID，逗号分隔
+    private String siteIds;
+    private Integer violationType;
+    private String violationDesc;
+    private Integer punishNum;
+    private Integer upstreamRank;
+    private Integer contentHash;
+    // 查询时关联compliance_status得到，不落库
+    private Integer processedStatus;
+}
@@ -0,0 +1,17 @@
+package com.czx.pojo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 店铺违规商品同步状态（compliance_sync_state表）
+ */
+@Data
+public class ComplianceSyncState {
+    private String mallid;
+    private Integer total;
+    private LocalDateTime lastSuccessAt;
+    private String lastError;
+    private LocalDateTime updatedAt;
+}
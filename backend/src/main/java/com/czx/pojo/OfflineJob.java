@@ -0,0 +1,40 @@
+package com.czx.pojo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 批量下架任务（offline_job表）
+ */
+@Data
+public class OfflineJob {
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String FAILED = "FAILED";
+
+    private Long id;
+    private Integer userId;
+    private String mallid;
+    private String status;
+    private Integer total;
+    private Integer successCount;
+    private Integer failedCount;
+    private Integer maxThreads;
+    private String error;
+    // 执行该任务的服务实例和它最近一次续约的时间
+    private String owner;
+    private LocalDateTime heartbeatAt;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    /**
+     * 是否已结束；取消后已开始下架的商品仍在执行，以结束时间为准
+     */
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.czx.pojo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 批量下架任务中单个SKC的结果（offline_job_item表）
+ */
+@Data
+public class OfflineJobItem {
+    public static final String PENDING = "PENDING";
+    public static final String SUCCESS = "SUCCESS";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private Long jobId;
+    private Long productId;
+    private Long spuId;
+    private String status;
+    private String message;
+    private LocalDateTime updatedAt;
+}
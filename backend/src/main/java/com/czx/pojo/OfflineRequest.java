@@ -2,11 +2,14 @@ package com.czx.pojo;
 
 import lombok.Data;
 import java.util.List;
+import java.util.Map;
 
 @Data
 public class OfflineRequest {
     private List<Long> productIds;  // 改为Long类型处理大数值
     private Integer max_threads;
+    // SKC ID到违规商品ID（spu_id）的映射，可选；同一违规商品的SKC全部下架成功后自动标记为已处理
+    private Map<Long, Long> spu_ids;
     
     // 为了向后兼容，添加getter方法
     public List<Integer> getProductIdsAsInteger() {
@@ -0,0 +1,15 @@
+package com.czx.pojo;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class StatusBatchRequest {
+    private List<Item> items;
+
+    @Data
+    public static class Item {
+        private Long productId;
+        private Integer status; // 0-未处理，1-已处理
+    }
+}
@@ -0,0 +1,11 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 客服会话消息
+ * senderType=1001为客服消息；contentType=6为带按钮的卡片消息
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChatMessage(String msgId, Integer senderType, Integer contentType, String content) {
+}
@@ -0,0 +1,71 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.List;
+
+/**
+ * 违规商品（merchant_appeal/entrance/list 的 punish_appeal_entrance_list 元素）
+ * 只保留前端用到的字段，字段名与上游保持一致直接返回给前端
+ * 上游字段首次序列化后编码结果保存在encoded中，withProcessedStatus得到的副本共用同一份，缓存命中时只需拼上processed_status
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonSerialize(using = ComplianceItemSerializer.class)
+public record ComplianceItem(
+        @JsonProperty("spu_id") Long spuId,
+        @JsonProperty("goods_name") String goodsName,
+        @JsonProperty("goods_img_url") String goodsImgUrl,
+        @JsonProperty("site_num") Integer siteNum,
+        @JsonProperty("punish_detail_list") List<PunishDetail> punishDetailList,
+        @JsonProperty("violation_type") Integer violationType,
+        @JsonProperty("violation_desc") String violationDesc,
+        @JsonProperty("punish_num") Integer punishNum,
+        // 本地处理状态，上游没有该字段
+        @JsonProperty("processed_status") Integer processedStatus,
+        @JsonIgnore Encoded encoded) {
+
+    public ComplianceItem {
+        punishDetailList = punishDetailList != null ? List.copyOf(punishDetailList) : List.of();
+        encoded = encoded != null ? encoded : new Encoded();
+    }
+
+    public ComplianceItem(Long spuId, String goodsName, String goodsImgUrl, Integer siteNum, List<PunishDetail> punishDetailList,
+                          Integer violationType, String violationDesc, Integer punishNum, Integer processedStatus) {
+        this(spuId, goodsName, goodsImgUrl, siteNum, punishDetailList, violationType, violationDesc, punishNum, processedStatus, null);
+    }
+
+    public ComplianceItem withProcessedStatus(Integer status) {
+        return new ComplianceItem(spuId, goodsName, goodsImgUrl, siteNum, punishDetailList,
+                violationType, violationDesc, punishNum, status, encoded);
+    }
+
+    /**
+     * 上游字段的JSON编码结果（不含processed_status及结尾的右括号）及其64位哈希，由ComplianceItemSerializer首次使用时填充
+     * hash先于prefix写入，读到prefix非空即可使用hash；不参与equals/hashCode
+     */
+    public static final class Encoded {
+        long hash;
+        volatile SerializableString prefix;
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Encoded;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    /**
+     * 违规站点，site_id为-1表示全站点
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record PunishDetail(@JsonProperty("site_id") Integer siteId) {
+    }
+}
@@ -0,0 +1,135 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * 违规商品序列化：上游字段只在首次序列化时编码一次，保存在ComplianceItem.Encoded中
+ * 之后每次输出直接把编码好的字节写入响应流，再拼上当前用户的processed_status，不再逐字段转义和编码
+ * 缓存中的同一页反复返回时，每条的开销只剩一次内存拷贝；输出与默认序列化完全一致（包括null字段）
+ */
+public class ComplianceItemSerializer extends StdSerializer<ComplianceItem> {
+
+    private static final SerializedString SPU_ID = new SerializedString("spu_id");
+    private static final SerializedString GOODS_NAME = new SerializedString("goods_name");
+    private static final SerializedString GOODS_IMG_URL = new SerializedString("goods_img_url");
+    private static final SerializedString SITE_NUM = new SerializedString("site_num");
+    private static final SerializedString PUNISH_DETAIL_LIST = new SerializedString("punish_detail_list");
+    private static final SerializedString SITE_ID = new SerializedString("site_id");
+    private static final SerializedString VIOLATION_TYPE = new SerializedString("violation_type");
+    private static final SerializedString VIOLATION_DESC = new SerializedString("violation_desc");
+    private static final SerializedString PUNISH_NUM = new SerializedString("punish_num");
+    private static final SerializedString PROCESSED_STATUS_SUFFIX = new SerializedString(",\"processed_status\":");
+    private static final SerializedString STATUS_0 = new SerializedString("0}");
+    private static final SerializedString STATUS_1 = new SerializedString("1}");
+    private static final SerializedString STATUS_NULL = new SerializedString("null}");
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    public ComplianceItemSerializer() {
+        super(ComplianceItem.class);
+    }
+
+    @Override
+    public void serialize(ComplianceItem item, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeRawValue(prefix(item));
+        Integer status = item.processedStatus();
+        if (status == null) {
+            gen.writeRaw(STATUS_NULL);
+        } else if (status == 0) {
+            gen.writeRaw(STATUS_0);
+        } else if (status == 1) {
+            gen.writeRaw(STATUS_1);
+        } else {
+            gen.writeRaw(status + "}");
+        }
+    }
+
+    /**
+     * 上游字段的64位哈希（FNV-1a），与序列化共用同一次编码，用于计算ETag
+     */
+    static long upstreamHash(ComplianceItem item) {
+        try {
+            prefix(item);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return item.encoded().hash;
+    }
+
+    /**
+     * 取已编码的上游字段，并发首次编码时重复编码一次无妨，结果相同
+     */
+    private static SerializableString prefix(ComplianceItem item) throws IOException {
+        ComplianceItem.Encoded encoded = item.encoded();
+        SerializableString prefix = encoded.prefix;
+        if (prefix == null) {
+            String json = encode(item);
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < json.length(); i++) {
+                hash = (hash ^ json.charAt(i)) * 0x100000001b3L;
+            }
+            encoded.hash = hash;
+            prefix = new SerializedString(json);
+            encoded.prefix = prefix;
+        }
+        return prefix;
+    }
+
+    /**
+     * 编码为 {"spu_id":...,"punish_num":...,"processed_status": ，由调用方补上状态值和右括号
+     */
+    private static String encode(ComplianceItem item) throws IOException {
+        StringWriter writer = new StringWriter(256);
+        try (JsonGenerator gen = FACTORY.createGenerator(writer)) {
+            gen.writeStartObject();
+            writeNumber(gen, SPU_ID, item.spuId());
+            writeString(gen, GOODS_NAME, item.goodsName());
+            writeString(gen, GOODS_IMG_URL, item.goodsImgUrl());
+            writeNumber(gen, SITE_NUM, item.siteNum());
+            gen.writeFieldName(PUNISH_DETAIL_LIST);
+            gen.writeStartArray();
+            for (ComplianceItem.PunishDetail detail : item.punishDetailList()) {
+                gen.writeStartObject();
+                writeNumber(gen, SITE_ID, detail.siteId());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            writeNumber(gen, VIOLATION_TYPE, item.violationType());
+            writeString(gen, VIOLATION_DESC, item.violationDesc());
+            writeNumber(gen, PUNISH_NUM, item.punishNum());
+            gen.writeEndObject();
+        }
+        StringBuffer json = writer.getBuffer();
+        // 去掉结尾的右括号，接上processed_status字段名
+        json.setLength(json.length() - 1);
+        return json.append(PROCESSED_STATUS_SUFFIX.getValue()).toString();
+    }
+
+    private static void writeString(JsonGenerator gen, SerializedString name, String value) throws IOException {
+        gen.writeFieldName(name);
+        if (value != null) {
+            gen.writeString(value);
+        } else {
+            gen.writeNull();
+        }
+    }
+
+    private static void writeNumber(JsonGenerator gen, SerializedString name, Number value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof Long) {
+            gen.writeNumber(value.longValue());
+        } else {
+            gen.writeNumber(value.intValue());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * merchant_appeal/entrance/list 的 result
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ComplianceListResult(
+        Integer total,
+        @JsonProperty("punish_appeal_entrance_list") List<ComplianceItem> items) {
+
+    public ComplianceListResult {
+        items = items != null ? List.copyOf(items) : null;
+    }
+
+    /**
+     * 总数、各条上游字段及处理状态的64位哈希，用作ETag
+     * 每条的上游字段哈希在首次计算后随编码结果一起保存，缓存命中时只需按条合并
+     */
+    public long contentHash() {
+        long hash = mix(0x9e3779b97f4a7c15L, total != null ? total : -1);
+        if (items != null) {
+            for (ComplianceItem item : items) {
+                hash = mix(hash, ComplianceItemSerializer.upstreamHash(item));
+                hash = mix(hash, item.processedStatus() != null ? item.processedStatus() : -1);
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0xbf58476d1ce4e5b9L;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,16 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * chat/queryMessage 的 result
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record MessageListResult(List<ChatMessage> messageList) {
+
+    public MessageListResult {
+        messageList = messageList != null ? List.copyOf(messageList) : List.of();
+    }
+}
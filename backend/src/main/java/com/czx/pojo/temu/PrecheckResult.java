@@ -0,0 +1,14 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * queryPreInterceptForToolSubmit 的 result，interceptCode为0表示可以下架
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record PrecheckResult(Integer interceptCode, String interceptMsg) {
+
+    public boolean passed() {
+        return interceptCode != null && interceptCode == 0;
+    }
+}
@@ -0,0 +1,10 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * queryProductSkcBasicInfo 的 result
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ProductSkcBasicInfo(String productName, String productPicture) {
+}
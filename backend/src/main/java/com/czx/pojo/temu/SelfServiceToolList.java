@@ -0,0 +1,20 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * querySelfServiceTools 的 result
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record SelfServiceToolList(List<Tool> list) {
+
+    public SelfServiceToolList {
+        list = list != null ? List.copyOf(list) : List.of();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Tool(String toolId, String toolName) {
+    }
+}
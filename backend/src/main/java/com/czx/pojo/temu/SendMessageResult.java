@@ -0,0 +1,10 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * chat/sendMessage 的 result
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record SendMessageResult(String msgId) {
+}
@@ -0,0 +1,40 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * 商品SKC（product/skc/pageQuery 的 pageItems 元素），只保留前端用到的字段
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record SkcPageItem(
+        Long productSkcId,
+        Long productId,
+        String productName,
+        String mainImageUrl,
+        Long createdAt,
+        Integer skcStatus,
+        Integer skcSiteStatus,
+        Integer virtualStock,
+        LeafCat leafCat,
+        List<SkuSummary> productSkuSummaries) {
+
+    public SkcPageItem {
+        productSkuSummaries = productSkuSummaries != null ? List.copyOf(productSkuSummaries) : List.of();
+    }
+
+    /**
+     * 叶子类目
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record LeafCat(Long catId, String catName) {
+    }
+
+    /**
+     * SKU摘要，价格单位为分
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record SkuSummary(Long productSkuId, Long supplierPrice, Integer virtualStock) {
+    }
+}
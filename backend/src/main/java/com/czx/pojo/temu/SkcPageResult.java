@@ -0,0 +1,16 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * product/skc/pageQuery 的 result
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record SkcPageResult(Integer total, List<SkcPageItem> pageItems) {
+
+    public SkcPageResult {
+        pageItems = pageItems != null ? List.copyOf(pageItems) : null;
+    }
+}
@@ -0,0 +1,25 @@
+package com.czx.pojo.temu;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * TEMU接口的通用响应结构
+ * 由NetworkRequest流式反序列化，未使用的字段直接跳过，不构建JsonNode树
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TemuResponse<T>(Boolean success, Integer errorCode, String errorMsg, String msg, T result) {
+
+    /**
+     * 业务是否成功
+     */
+    public boolean succeeded() {
+        return Boolean.TRUE.equals(success);
+    }
+
+    /**
+     * 错误提示，两种字段名都可能出现
+     */
+    public String errorMessage() {
+        return errorMsg != null ? errorMsg : msg;
+    }
+}
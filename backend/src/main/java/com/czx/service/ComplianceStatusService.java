@@ -15,6 +15,14 @@ public interface ComplianceStatusService {
      */
     boolean updateStatus(Integer userId, Long productId, Integer status);
     
+    /**
+     * 批量更新商品处理状态，在一个事务内完成
+     * @param userId 用户ID
+     * @param statuses 商品ID到状态的映射
+     * @return 更新的商品数
+     */
+    int updateStatusBatch(Integer userId, Map<Long, Integer> statuses);
+    
     /**
      * 批量获取商品处理状态
      * @param userId 用户ID
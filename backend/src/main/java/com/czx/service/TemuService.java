@@ -1,16 +1,28 @@
 package com.czx.service;
 
+import com.czx.pojo.PageBean;
+
 import java.util.List;
 import java.util.Map;
 
 public interface TemuService {
+    /**
+     * 获取违规列表的一页数据和总数，只请求一次上游
+     * @param userId 用户ID
+     * @param page 页码
+     * @param pageSize 每页大小
+     * @param violationType 违规类型（可选）
+     * @return 包含items、total和etag的分页数据
+     */
+    Map<String, Object> getCompliancePage(Integer userId, int page, int pageSize, Integer violationType);
+    
     /**
      * 获取违规列表
      * @param userId 用户ID
      * @param page 页码
      * @param pageSize 每页大小
      * @param violationType 违规类型（可选）
-     * @return 违规列表数据
+     * @return 违规列表数据（items、etag）
      */
     Map<String, Object> getComplianceList(Integer userId, int page, int pageSize, Integer violationType);
     
@@ -31,7 +43,7 @@ public interface TemuService {
      * @param productName 商品名称
      * @param page 页码
      * @param pageSize 每页大小
-     * @return 商品列表数据
+     * @return 商品列表数据（items、etag）
      */
     Map<String, Object> getProducts(Integer userId, List<Long> productIds, String productName, int page, int pageSize);
     
@@ -40,9 +52,47 @@ public interface TemuService {
      * @param userId 用户ID
      * @param productIds 商品ID列表
      * @param maxThreads 最大线程数
+     * @param spuIds SKC ID到违规商品ID的映射（可选），用于下架成功后标记处理状态
      * @return 下架结果数据
      */
-    Map<String, Object> offlineProducts(Integer userId, List<Long> productIds, int maxThreads);
+    Map<String, Object> offlineProducts(Integer userId, List<Long> productIds, int maxThreads, Map<Long, Long> spuIds);
+    
+    /**
+     * 提交异步批量下架任务，立即返回，由后台逐个商品下架并把结果写入数据库
+     * @param userId 用户ID
+     * @param productIds SKC ID列表
+     * @param maxThreads 并发数
+     * @param spuIds SKC ID到违规商品ID的映射（可选），任务结束时把全部SKC下架成功的商品标记为已处理
+     * @return 包含jobId和total
+     */
+    Map<String, Object> submitOfflineJob(Integer userId, List<Long> productIds, int maxThreads, Map<Long, Long> spuIds);
+    
+    /**
+     * 查询批量下架任务的状态和进度
+     * @param userId 用户ID
+     * @param jobId 任务ID
+     * @return 任务状态，任务不存在时返回null
+     */
+    Map<String, Object> getOfflineJob(Integer userId, Long jobId);
+    
+    /**
+     * 分页查询批量下架任务中每个商品的结果
+     * @param userId 用户ID
+     * @param jobId 任务ID
+     * @param status 结果状态（可选）
+     * @param page 页码
+     * @param pageSize 每页大小
+     * @return 分页结果，任务不存在时返回null
+     */
+    PageBean getOfflineJobItems(Integer userId, Long jobId, String status, int page, int pageSize);
+    
+    /**
+     * 取消批量下架任务，已开始下架的商品会执行完
+     * @param userId 用户ID
+     * @param jobId 任务ID
+     * @return 是否取消成功（任务已结束时返回false）
+     */
+    boolean cancelOfflineJob(Integer userId, Long jobId);
     
     /**
      * 标记商品处理状态
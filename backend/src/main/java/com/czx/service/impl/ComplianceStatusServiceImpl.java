@@ -3,13 +3,18 @@ package com.czx.service.impl;
 import com.czx.mapper.ComplianceStatusMapper;
 import com.czx.pojo.ComplianceStatus;
 import com.czx.service.ComplianceStatusService;
+import com.czx.utils.CompliancePageCache;
+import com.czx.utils.ComplianceStatusCache;
+import com.czx.utils.LongIntMap;
+import com.czx.utils.StatusWriteBuffer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 public class ComplianceStatusServiceImpl implements ComplianceStatusService {
@@ -17,15 +22,39 @@ public class ComplianceStatusServiceImpl implements ComplianceStatusService {
     @Autowired
     private ComplianceStatusMapper complianceStatusMapper;
 
+    @Autowired
+    private CompliancePageCache compliancePageCache;
+
+    @Autowired
+    private ComplianceStatusCache statusCache;
+
+    @Autowired
+    private StatusWriteBuffer statusWriteBuffer;
+
+    // 状态表中不存在的商品
+    private static final int NO_STATUS = Integer.MIN_VALUE;
+    // 单条IN查询的最大参数个数
+    private static final int MAX_IN_SIZE = 500;
+    private static final int[] IN_SIZE_BUCKETS = {10, 50, 100, 200, MAX_IN_SIZE};
+    // 单条批量upsert语句的最大行数
+    private static final int MAX_BATCH_SIZE = 500;
+
     @Override
     public boolean updateStatus(Integer userId, Long productId, Integer status) {
         try {
-            ComplianceStatus complianceStatus = new ComplianceStatus();
-            complianceStatus.setUserId(userId);
-            complianceStatus.setProductId(productId);
-            complianceStatus.setStatus(status);
-            
-            complianceStatusMapper.saveOrUpdate(complianceStatus);
+            // 开启write-behind时写入缓冲即返回，由后台批量落库
+            if (!statusWriteBuffer.offer(userId, Map.of(productId, status))) {
+                ComplianceStatus complianceStatus = new ComplianceStatus();
+                complianceStatus.setUserId(userId);
+                complianceStatus.setProductId(productId);
+                complianceStatus.setStatus(status);
+                
+                statusWriteBuffer.writeThrough(userId, List.of(productId),
+                        () -> complianceStatusMapper.saveOrUpdate(complianceStatus));
+            }
+            statusCache.put(userId, productId, status);
+            // 同步更新已缓存的违规列表分页
+            compliancePageCache.updateStatus(userId, productId, status);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -33,25 +62,95 @@ public class ComplianceStatusServiceImpl implements ComplianceStatusService {
         }
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int updateStatusBatch(Integer userId, Map<Long, Integer> statuses) {
+        if (statuses == null || statuses.isEmpty()) {
+            return 0;
+        }
+        
+        if (!statusWriteBuffer.offer(userId, statuses)) {
+            List<ComplianceStatus> items = new ArrayList<>(statuses.size());
+            statuses.forEach((productId, status) -> {
+                ComplianceStatus complianceStatus = new ComplianceStatus();
+                complianceStatus.setProductId(productId);
+                complianceStatus.setStatus(status);
+                items.add(complianceStatus);
+            });
+            // 每批一条多行语句，整体在同一事务内
+            statusWriteBuffer.writeThrough(userId, statuses.keySet(), () -> {
+                for (int from = 0; from < items.size(); from += MAX_BATCH_SIZE) {
+                    complianceStatusMapper.saveOrUpdateBatch(userId, items.subList(from, Math.min(items.size(), from + MAX_BATCH_SIZE)));
+                }
+            });
+        }
+        
+        statuses.forEach((productId, status) -> statusCache.put(userId, productId, status));
+        compliancePageCache.updateStatuses(userId, statuses);
+        return statuses.size();
+    }
+
     @Override
     public Map<Long, Integer> getStatusByProductIds(Integer userId, List<Long> productIds) {
         if (productIds == null || productIds.isEmpty()) {
             return new HashMap<>();
         }
         
-        // 将ID列表转换为逗号分隔的字符串
-        String productIdsStr = productIds.stream()
-                .map(String::valueOf)
-                .collect(Collectors.joining(","));
-        
-        List<ComplianceStatus> statusList = complianceStatusMapper.findByUserIdAndProductIds(userId, productIdsStr);
-        
-        // 将结果转换为Map
         Map<Long, Integer> resultMap = new HashMap<>();
-        for (ComplianceStatus status : statusList) {
-            resultMap.put(status.getProductId(), status.getStatus());
+        // 用户的全部状态已在内存时直接查表，不访问数据库
+        LongIntMap statuses = statusCache.get(userId, limit -> loadAllStatuses(userId, limit));
+        if (statuses != null) {
+            for (Long productId : productIds) {
+                int status = statuses.get(productId, NO_STATUS);
+                if (status != NO_STATUS) {
+                    resultMap.put(productId, status);
+                }
+            }
+            // 缓存重新加载时读到的是库里的值，叠加尚未落库的写入
+            statusWriteBuffer.overlay(userId, productIds, resultMap);
+            return resultMap;
         }
         
+        // 数据量太大不缓存的用户，按ID分批参数化查询
+        for (int from = 0; from < productIds.size(); from += MAX_IN_SIZE) {
+            List<Long> chunk = padChunk(productIds.subList(from, Math.min(productIds.size(), from + MAX_IN_SIZE)));
+            for (ComplianceStatus status : complianceStatusMapper.findByUserIdAndProductIds(userId, chunk)) {
+                resultMap.put(status.getProductId(), status.getStatus());
+            }
+        }
+        statusWriteBuffer.overlay(userId, productIds, resultMap);
         return resultMap;
     }
-}
\ No newline at end of file
+    
+    private LongIntMap loadAllStatuses(Integer userId, long limit) {
+        long count = complianceStatusMapper.countByUserId(userId);
+        if (count > limit) {
+            return null;
+        }
+        LongIntMap statuses = new LongIntMap((int) count);
+        complianceStatusMapper.streamByUserId(userId, context -> {
+            ComplianceStatus status = context.getResultObject();
+            statuses.put(status.getProductId(), status.getStatus());
+        });
+        return statuses;
+    }
+    
+    /**
+     * IN参数个数补齐到固定的几档，重复最后一个ID，使生成的SQL只有少数几种，可以复用预编译语句
+     */
+    private static List<Long> padChunk(List<Long> chunk) {
+        int size = chunk.size();
+        for (int bucket : IN_SIZE_BUCKETS) {
+            if (size <= bucket) {
+                size = bucket;
+                break;
+            }
+        }
+        List<Long> padded = new ArrayList<>(size);
+        padded.addAll(chunk);
+        while (padded.size() < size) {
+            padded.add(chunk.get(chunk.size() - 1));
+        }
+        return padded;
+    }
+}
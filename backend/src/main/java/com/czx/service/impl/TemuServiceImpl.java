@@ -1,14 +1,38 @@
 package com.czx.service.impl;
 
+import com.czx.config.TemuHttpProperties;
+import com.czx.config.TemuOfflineProperties;
+import com.czx.mapper.OfflineJobMapper;
 import com.czx.mapper.ViolationTypeMapper;
+import com.czx.pojo.OfflineJob;
+import com.czx.pojo.OfflineJobItem;
+import com.czx.pojo.PageBean;
 import com.czx.pojo.UserConfig;
 import com.czx.pojo.ViolationType;
+import com.czx.pojo.temu.ChatMessage;
+import com.czx.pojo.temu.ComplianceItem;
+import com.czx.pojo.temu.ComplianceListResult;
+import com.czx.pojo.temu.MessageListResult;
+import com.czx.pojo.temu.PrecheckResult;
+import com.czx.pojo.temu.ProductSkcBasicInfo;
+import com.czx.pojo.temu.SelfServiceToolList;
+import com.czx.pojo.temu.SendMessageResult;
+import com.czx.pojo.temu.SkcPageResult;
+import com.czx.pojo.temu.TemuResponse;
 import com.czx.service.ComplianceStatusService;
 import com.czx.service.TemuService;
 import com.czx.service.UserConfigService;
+import com.czx.sync.ComplianceMirrorSync;
+import com.czx.utils.CompliancePageCache;
+import com.czx.utils.ETagUtils;
 import com.czx.utils.NetworkRequest;
-import com.czx.utils.JsonUtils;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.czx.utils.OfflineExecutor;
+import com.czx.utils.OfflineJobLease;
+import com.czx.utils.OfflinePipeline;
+import com.czx.utils.OfflineResultPoller;
+import com.czx.utils.ProductInfoCache;
+import com.czx.utils.UpstreamRateLimiter;
+import com.czx.utils.UpstreamResilience;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -18,12 +42,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.regex.Pattern;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +62,8 @@ import org.slf4j.LoggerFactory;
 public class TemuServiceImpl implements TemuService {
     
     private static final Logger log = LoggerFactory.getLogger(TemuServiceImpl.class);
+    // 异步下架任务的明细单条insert语句的最大行数
+    private static final int OFFLINE_JOB_INSERT_ROWS = 500;
     
     // 注入ViolationTypeMapper
     @Autowired
@@ -43,12 +75,51 @@ public class TemuServiceImpl implements TemuService {
     @Autowired
     private NetworkRequest networkRequest;
     
+    @Autowired
+    private UpstreamResilience resilience;
+    
+    @Autowired
+    private TemuHttpProperties httpProperties;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
     @Autowired
     private ComplianceStatusService complianceStatusService;
     
+    @Autowired
+    private CompliancePageCache compliancePageCache;
+    
+    @Autowired
+    private ComplianceMirrorSync complianceMirrorSync;
+    
+    @Autowired
+    private UpstreamRateLimiter rateLimiter;
+    
+    @Autowired
+    private OfflineExecutor offlineExecutor;
+    
+    @Autowired
+    private OfflineResultPoller offlineResultPoller;
+    
+    @Autowired
+    private OfflinePipeline offlinePipeline;
+    
+    @Autowired
+    private ProductInfoCache productInfoCache;
+    
+    @Autowired
+    private TemuOfflineProperties offlineProperties;
+    
+    @Autowired
+    private OfflineJobMapper offlineJobMapper;
+    
+    @Autowired
+    private OfflineJobLease offlineJobLease;
+    
+    // 本实例上运行中的异步下架任务，用于取消
+    private final Map<Long, OfflineJobRun> runningOfflineJobs = new ConcurrentHashMap<>();
+    
     /**
      * 获取违规描述选项列表
      * @param userId 用户ID
@@ -82,77 +153,38 @@ public class TemuServiceImpl implements TemuService {
     }
     
     @Override
-    public Map<String, Object> getComplianceList(Integer userId, int page, int pageSize, Integer violationType) {
+    public Map<String, Object> getCompliancePage(Integer userId, int page, int pageSize, Integer violationType) {
         try {
-            // 根据用户ID获取配置
-            UserConfig config = userConfigService.getConfigByUserId(userId);
-            if (config == null) {
-                throw new RuntimeException("用户配置不存在");
+            ComplianceListResult listResult = loadCompliancePage(userId, page, pageSize, violationType, true);
+            if (listResult.total() == null) {
+                throw new RuntimeException("数据格式错误");
             }
             
-            String agentseller_cookie = config.getAgentseller_cookie();
-            String mallid = config.getMallid();
-            String origin_url = "https://agentseller.temu.com";
-            String api_url = "https://agentseller.temu.com/mms/tmod_punish/agent/merchant_appeal/entrance/list";
-            
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("page_num", page);
-            payload.put("page_size", pageSize);
-            payload.put("target_type", "goods");
+            Map<String, Object> result = new HashMap<>();
+            result.put("items", listResult.items());
+            result.put("total", listResult.total());
+            result.put("etag", ETagUtils.of(listResult.contentHash()));
+            result.put("success", true);
+            return result;
             
-            // 如果指定了违规类型，添加到请求参数中
-            if (violationType != null) {
-                payload.put("violation_type", violationType);
-            }
+        } catch (Exception e) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            return result;
+        }
+    }
+    
+    @Override
+    public Map<String, Object> getComplianceList(Integer userId, int page, int pageSize, Integer violationType) {
+        try {
+            ComplianceListResult listResult = loadCompliancePage(userId, page, pageSize, violationType, true);
             
-            Optional<JsonNode> response = networkRequest.post(api_url, payload, agentseller_cookie, mallid, origin_url);
-            if (response.isEmpty()) {
-                throw new RuntimeException("获取数据失败");
-            }
-            
-            JsonNode jsonNode = response.get();
-            Boolean success = JsonUtils.getBoolean(jsonNode, "success");
-            
-            if (success != null && success) {
-                JsonNode resultNode = JsonUtils.getNode(jsonNode, "result");
-                if (resultNode != null) {
-                    // 获取商品列表
-                    JsonNode itemsNode = JsonUtils.getNode(resultNode, "punish_appeal_entrance_list");
-                    if (itemsNode != null && itemsNode.isArray()) {
-                        // 提取所有商品ID
-                        List<Long> productIds = new ArrayList<>();
-                        for (JsonNode item : itemsNode) {
-                            Long spuId = JsonUtils.getLong(item, "spu_id");
-                            if (spuId != null) {
-                                productIds.add(spuId);
-                            }
-                        }
-                        
-                        // 获取这些商品的处理状态
-                        Map<Long, Integer> statusMap = complianceStatusService.getStatusByProductIds(userId, productIds);
-                        
-                        // 将处理状态添加到商品数据中
-                        for (JsonNode item : itemsNode) {
-                            Long spuId = JsonUtils.getLong(item, "spu_id");
-                            if (spuId != null) {
-                                // 使用ObjectNode可以修改JsonNode
-                                ((ObjectNode) item).put("processed_status", statusMap.getOrDefault(spuId, 0));
-                            }
-                        }
-                    }
-                    JsonNode punishAppealList = JsonUtils.getNode(resultNode, "punish_appeal_entrance_list");
-                    if (punishAppealList != null) {
-                        Map<String, Object> result = new HashMap<>();
-                        result.put("items", punishAppealList);
-                        result.put("success", true);
-                        return result;
-                    }
-                }
-                throw new RuntimeException("数据格式错误");
-            } else {
-                String msg = JsonUtils.getString(jsonNode, "msg");
-                throw new RuntimeException("获取数据失败: " + (msg != null ? msg : "未知错误"));
-            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("items", listResult.items());
+            result.put("etag", ETagUtils.of(listResult.contentHash()));
+            result.put("success", true);
+            return result;
             
         } catch (Exception e) {
             Map<String, Object> result = new HashMap<>();
@@ -165,54 +197,104 @@ public class TemuServiceImpl implements TemuService {
     @Override
     public Integer getComplianceTotal(Integer userId, int page, int pageSize, Integer violationType) {
         try {
-            // 根据用户ID获取配置
-            UserConfig config = userConfigService.getConfigByUserId(userId);
-            if (config == null) {
-                throw new RuntimeException("用户配置不存在");
-            }
-            
-            String agentseller_cookie = config.getAgentseller_cookie();
-            String mallid = config.getMallid();
-            String origin_url = "https://agentseller.temu.com";
-            String api_url = "https://agentseller.temu.com/mms/tmod_punish/agent/merchant_appeal/entrance/list";
-            
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("page_num", page);
-            payload.put("page_size", pageSize);
-            payload.put("target_type", "goods");
-            
-            // 如果指定了违规类型，添加到请求参数中
-            if (violationType != null) {
-                payload.put("violation_type", violationType);
-            }
-            
-            Optional<JsonNode> response = networkRequest.post(api_url, payload, agentseller_cookie, mallid, origin_url);
-            if (response.isEmpty()) {
-                throw new RuntimeException("获取数据失败");
-            }
-            
-            JsonNode jsonNode = response.get();
-            Boolean success = JsonUtils.getBoolean(jsonNode, "success");
-            
-            if (success != null && success) {
-                JsonNode resultNode = JsonUtils.getNode(jsonNode, "result");
-                if (resultNode != null) {
-                    Integer total = JsonUtils.getInteger(resultNode, "total");
-                    if (total != null) {
-                        return total;
-                    }
-                }
+            ComplianceListResult listResult = loadCompliancePage(userId, page, pageSize, violationType, false);
+            if (listResult.total() == null) {
                 throw new RuntimeException("数据格式错误");
-            } else {
-                String msg = JsonUtils.getString(jsonNode, "msg");
-                throw new RuntimeException("获取数据失败: " + (msg != null ? msg : "未知错误"));
             }
+            return listResult.total();
             
         } catch (Exception e) {
             throw new RuntimeException("获取违规总数失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 列表、总数和分页接口共用同一次上游请求：entrance/list的响应同时包含当页商品和总数
+     * 开启后台同步的店铺查本地库，否则按固定大小的块请求上游，翻页、切换每页条数或筛选条件时优先使用缓存的块
+     * prefetch为true时返回后在后台预取之后几页，下一页通常可直接命中缓存
+     */
+    private ComplianceListResult loadCompliancePage(Integer userId, int page, int pageSize, Integer violationType, boolean prefetch) {
+        // 根据用户ID获取配置
+        UserConfig config = userConfigService.getConfigByUserId(userId);
+        if (config == null) {
+            throw new RuntimeException("用户配置不存在");
+        }
+        if (complianceMirrorSync.isServing(config.getMallid())) {
+            // 已同步到本地的店铺直接查库，不再请求上游
+            return complianceMirrorSync.queryPage(userId, config.getMallid(), violationType, page, pageSize);
+        }
+        CompliancePageCache.BlockFetcher fetcher = (blockPage, blockSize) -> fetchCompliancePage(config, blockPage, blockSize, violationType);
+        UnaryOperator<ComplianceListResult> enricher = listResult -> withProcessedStatus(userId, listResult);
+        ComplianceListResult result = compliancePageCache.getPage(userId, config.getMallid(), violationType, page, pageSize,
+                fetcher, enricher);
+        if (prefetch) {
+            compliancePageCache.prefetch(userId, config.getMallid(), violationType, page, pageSize, result.total(),
+                    fetcher, enricher, () -> rateLimiter.hasHeadroom(config.getMallid()));
+        }
+        return result;
+    }
+    
+    /**
+     * 异步请求一页违规商品，上游失败或数据格式错误时以RuntimeException结束
+     */
+    private CompletableFuture<ComplianceListResult> fetchCompliancePage(UserConfig config, int page, int pageSize, Integer violationType) {
+        String agentseller_cookie = config.getAgentseller_cookie();
+        String mallid = config.getMallid();
+        String origin_url = httpProperties.getBaseUrl();
+        String api_url = httpProperties.getBaseUrl() + "/mms/tmod_punish/agent/merchant_appeal/entrance/list";
+        
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("page_num", page);
+        payload.put("page_size", pageSize);
+        payload.put("target_type", "goods");
+        
+        // 如果指定了违规类型，添加到请求参数中
+        if (violationType != null) {
+            payload.put("violation_type", violationType);
+        }
+        
+        return networkRequest.postAsync(api_url, payload, agentseller_cookie, mallid, origin_url, ComplianceListResult.class)
+                .thenApply(body -> {
+                    if (body == null) {
+                        throw new RuntimeException("获取数据失败");
+                    }
+                    if (!body.succeeded()) {
+                        String msg = body.errorMessage();
+                        throw new RuntimeException("获取数据失败: " + (msg != null ? msg : "未知错误"));
+                    }
+                    ComplianceListResult listResult = body.result();
+                    if (listResult == null || listResult.items() == null) {
+                        throw new RuntimeException("数据格式错误");
+                    }
+                    // 顺带记下商品名称和图片，下架时不必再查
+                    productInfoCache.putComplianceItems(mallid, listResult.items());
+                    return listResult;
+                });
+    }
+    
+    /**
+     * 合并本地记录的处理状态
+     */
+    private ComplianceListResult withProcessedStatus(Integer userId, ComplianceListResult listResult) {
+        // 提取所有商品ID
+        List<Long> productIds = new ArrayList<>();
+        for (ComplianceItem item : listResult.items()) {
+            if (item.spuId() != null) {
+                productIds.add(item.spuId());
+            }
+        }
+        
+        // 获取这些商品的处理状态
+        Map<Long, Integer> statusMap = complianceStatusService.getStatusByProductIds(userId, productIds);
+        
+        // 将处理状态添加到商品数据中
+        List<ComplianceItem> items = new ArrayList<>(listResult.items().size());
+        for (ComplianceItem item : listResult.items()) {
+            items.add(item.spuId() != null ? item.withProcessedStatus(statusMap.getOrDefault(item.spuId(), 0)) : item);
+        }
+        return new ComplianceListResult(listResult.total(), items);
+    }
+    
     @Override
     public Map<String, Object> getProducts(Integer userId, List<Long> productIds, String productName, int page, int pageSize) {
         try {
@@ -224,8 +306,8 @@ public class TemuServiceImpl implements TemuService {
             
             String agentseller_cookie = config.getAgentseller_cookie();
             String mallid = config.getMallid();
-            String origin_url = "https://agentseller.temu.com";
-            String url = "https://agentseller.temu.com/visage-agent-seller/product/skc/pageQuery";
+            String origin_url = httpProperties.getBaseUrl();
+            String url = httpProperties.getBaseUrl() + "/visage-agent-seller/product/skc/pageQuery";
             
             Map<String, Object> payload = new HashMap<>();
             payload.put("page", page);
@@ -238,28 +320,26 @@ public class TemuServiceImpl implements TemuService {
                 payload.put("productName", productName);
             }
             
-            Optional<JsonNode> response = networkRequest.post(url, payload, agentseller_cookie, mallid, origin_url);
+            Optional<TemuResponse<SkcPageResult>> response = networkRequest.post(url, payload,
+                    agentseller_cookie, mallid, origin_url, SkcPageResult.class);
             if (response.isEmpty()) {
                 throw new RuntimeException("查询失败");
             }
             
-            JsonNode jsonNode = response.get();
-            Boolean success = JsonUtils.getBoolean(jsonNode, "success");
-            
-            if (success != null && success) {
-                JsonNode resultNode = JsonUtils.getNode(jsonNode, "result");
-                if (resultNode != null) {
-                    JsonNode itemsNode = JsonUtils.getNode(resultNode, "pageItems");
-                    if (itemsNode != null) {
-                        Map<String, Object> result = new HashMap<>();
-                        result.put("items", itemsNode);
-                        result.put("success", true);
-                        return result;
-                    }
+            TemuResponse<SkcPageResult> body = response.get();
+            if (body.succeeded()) {
+                if (body.result() != null && body.result().pageItems() != null) {
+                    // 顺带记下商品名称和图片，下架时不必再查
+                    productInfoCache.putSkcItems(mallid, body.result().pageItems());
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("items", body.result().pageItems());
+                    result.put("etag", ETagUtils.of(body.result().pageItems()));
+                    result.put("success", true);
+                    return result;
                 }
                 throw new RuntimeException("数据格式错误");
             } else {
-                String msg = JsonUtils.getString(jsonNode, "msg");
+                String msg = body.errorMessage();
                 throw new RuntimeException("查询失败: " + (msg != null ? msg : "未知错误"));
             }
             
@@ -272,7 +352,7 @@ public class TemuServiceImpl implements TemuService {
     }
     
     @Override
-    public Map<String, Object> offlineProducts(Integer userId, List<Long> productIds, int maxThreads) {
+    public Map<String, Object> offlineProducts(Integer userId, List<Long> productIds, int maxThreads, Map<Long, Long> spuIds) {
         try {
             // 根据用户ID获取配置
             UserConfig config = userConfigService.getConfigByUserId(userId);
@@ -281,7 +361,7 @@ public class TemuServiceImpl implements TemuService {
             }
             
             // 调用批量下架方法
-            return batchOfflineProducts(config, productIds, maxThreads);
+            return batchOfflineProducts(config, productIds, maxThreads, spuIds);
             
         } catch (Exception e) {
             Map<String, Object> result = new HashMap<>();
@@ -295,14 +375,334 @@ public class TemuServiceImpl implements TemuService {
      * 批量下架商品的核心逻辑
      * 参考Python版本的实现，包含完整的缓存机制、重试机制、轮询查询等
      */
-    private Map<String, Object> batchOfflineProducts(UserConfig config, List<Long> productIds, int maxThreads) {
+    private Map<String, Object> batchOfflineProducts(UserConfig config, List<Long> productIds, int maxThreads, Map<Long, Long> spuIds) {
         try {
             String agentseller_cookie = config.getAgentseller_cookie();
             String mallid = config.getMallid();
+            String origin_url = httpProperties.getBaseUrl();
+            
+            Map<String, Object> session = openOfflineSession(config);
+            if (!(Boolean) session.get("success")) {
+                return session;
+            }
+            String parent_msg_id = (String) session.get("parentMsgId");
+            String tool_id = (String) session.get("toolId");
+            boolean cache_valid = (Boolean) session.get("cacheUsed");
+            
+            // 交给全局共用的下架执行器，并发数受全局、用户和max_threads三重限制
+            int actual_threads = Math.min(offlineExecutor.parallelism(maxThreads), productIds.size());
+            
+            // 创建final变量用于lambda表达式
+            final String final_parent_msg_id = parent_msg_id;
+            final String final_tool_id = tool_id;
+            
+            // 提交所有任务
+            List<CompletableFuture<Map<String, Object>>> futures = submitOfflineProducts(config.getUser_id(), maxThreads, productIds,
+                    spuIds, () -> false, final_parent_msg_id, final_tool_id, agentseller_cookie, mallid, origin_url);
+            
+            // 等待所有任务完成
+            List<Map<String, Object>> results = futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+            
+            // 统计结果
+            long success_count = results.stream().filter(r -> (Boolean) r.get("success")).count();
+            long total_count = results.size();
+            
+            Map<String, Object> result_data = new HashMap<>();
+            result_data.put("success", true);
+            result_data.put("message", String.format("批量下架完成，共处理 %d 个商品，%d 个下架成功", total_count, success_count));
+            result_data.put("parentMsgId", parent_msg_id);
+            result_data.put("toolId", tool_id);
+            result_data.put("cacheUsed", cache_valid);
+            result_data.put("threadInfo", Map.of(
+                "maxThreads", maxThreads,
+                "actualThreads", actual_threads,
+                "productCount", productIds.size()
+            ));
+            result_data.put("results", results);
+            result_data.put("processedSpuIds", markOfflineProcessed(config.getUser_id(), results, spuIds));
+            result_data.put("summary", Map.of(
+                "total", total_count,
+                "success", success_count,
+                "failed", total_count - success_count
+            ));
+            
+            return result_data;
+            
+        } catch (Exception e) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            return result;
+        }
+    }
+    
+    @Override
+    public Map<String, Object> submitOfflineJob(Integer userId, List<Long> productIds, int maxThreads, Map<Long, Long> spuIds) {
+        OfflineJob job = null;
+        try {
+            // 根据用户ID获取配置
+            UserConfig config = userConfigService.getConfigByUserId(userId);
+            if (config == null) {
+                throw new RuntimeException("用户配置不存在");
+            }
+            List<Long> distinctIds = productIds == null ? List.of() : productIds.stream().distinct().collect(Collectors.toList());
+            if (distinctIds.isEmpty()) {
+                throw new RuntimeException("商品列表为空");
+            }
+            if (distinctIds.size() > offlineProperties.getMaxJobItems()) {
+                throw new RuntimeException("单个任务最多下架 " + offlineProperties.getMaxJobItems() + " 个商品");
+            }
+            
+            job = new OfflineJob();
+            job.setUserId(userId);
+            job.setMallid(config.getMallid());
+            job.setStatus(OfflineJob.PENDING);
+            job.setTotal(distinctIds.size());
+            job.setMaxThreads(maxThreads);
+            job.setOwner(offlineJobLease.owner());
+            offlineJobMapper.insertJob(job);
+            // 任务结束前由本实例续约
+            offlineJobLease.hold(job.getId());
+            
+            // 明细分批多行插入
+            List<OfflineJobItem> items = new ArrayList<>(distinctIds.size());
+            for (Long productId : distinctIds) {
+                OfflineJobItem item = new OfflineJobItem();
+                item.setProductId(productId);
+                item.setSpuId(spuIds != null ? spuIds.get(productId) : null);
+                items.add(item);
+            }
+            for (int from = 0; from < items.size(); from += OFFLINE_JOB_INSERT_ROWS) {
+                offlineJobMapper.insertItems(job.getId(), items.subList(from, Math.min(items.size(), from + OFFLINE_JOB_INSERT_ROWS)));
+            }
+            
+            startOfflineJob(job, config, distinctIds, spuIds);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("jobId", job.getId());
+            result.put("total", distinctIds.size());
+            return result;
+            
+        } catch (Exception e) {
+            if (job != null && job.getId() != null) {
+                finishOfflineJobQuietly(job.getId(), OfflineJob.FAILED, e.getMessage());
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            return result;
+        }
+    }
+    
+    /**
+     * 在下架执行器上先准备会话，再逐个商品下架；会话准备同样计入该用户的并发
+     * 全部结束后写入剩余结果、标记处理状态并结束任务
+     */
+    private void startOfflineJob(OfflineJob job, UserConfig config, List<Long> productIds, Map<Long, Long> spuIds) {
+        Long jobId = job.getId();
+        Integer userId = job.getUserId();
+        OfflineJobRun run = new OfflineJobRun(jobId);
+        runningOfflineJobs.put(jobId, run);
+        
+        Supplier<Map<String, Object>> prepare = () -> {
+            if (run.cancelled || offlineJobMapper.markRunning(jobId) == 0) {
+                // 开始前已被取消
+                run.cancelled = true;
+                return null;
+            }
+            return openOfflineSession(config);
+        };
+        CompletableFuture<Map<String, Object>> session;
+        try {
+            session = offlineExecutor.submitAll(userId, 1, List.of(prepare)).get(0);
+        } catch (RuntimeException e) {
+            runningOfflineJobs.remove(jobId);
+            throw e;
+        }
+        session.thenCompose(info -> {
+            if (info == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (!(Boolean) info.get("success")) {
+                throw new RuntimeException((String) info.get("error"));
+            }
+            String parent_msg_id = (String) info.get("parentMsgId");
+            String tool_id = (String) info.get("toolId");
+            List<CompletableFuture<Map<String, Object>>> futures = submitOfflineProducts(userId, job.getMaxThreads(), productIds,
+                    spuIds, () -> run.cancelled, parent_msg_id, tool_id, config.getAgentseller_cookie(), config.getMallid(), httpProperties.getBaseUrl());
+            return CompletableFuture.allOf(futures.stream()
+                    .map(future -> future.thenAccept(r -> {
+                        if (r != null) {
+                            run.record((Long) r.get("productId"), Boolean.TRUE.equals(r.get("success")), (String) r.get("message"));
+                        }
+                    }))
+                    .toArray(CompletableFuture[]::new));
+        }).whenComplete((ignored, e) -> {
+            run.flush();
+            runningOfflineJobs.remove(jobId);
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("批量下架任务{}失败: {}", jobId, cause.getMessage());
+                finishOfflineJobQuietly(jobId, OfflineJob.FAILED, cause.getMessage());
+                return;
+            }
+            try {
+                // 先标记处理状态再结束任务，前端看到任务结束时状态已更新
+                List<Long> processedSpuIds = offlineJobMapper.findFullySucceededSpuIds(jobId);
+                if (!processedSpuIds.isEmpty()) {
+                    Map<Long, Integer> statuses = new HashMap<>();
+                    processedSpuIds.forEach(spuId -> statuses.put(spuId, 1));
+                    complianceStatusService.updateStatusBatch(userId, statuses);
+                }
+            } catch (Exception ex) {
+                log.error("批量下架任务{}标记处理状态失败: {}", jobId, ex.getMessage());
+            }
+            finishOfflineJobQuietly(jobId, run.cancelled ? OfflineJob.CANCELLED : OfflineJob.COMPLETED, null);
+        });
+    }
+    
+    /**
+     * 结束任务，未执行的商品标记为已取消
+     */
+    private void finishOfflineJobQuietly(Long jobId, String status, String error) {
+        try {
+            offlineJobMapper.cancelPendingItems(jobId);
+            offlineJobMapper.finish(jobId, status, truncate(error));
+        } catch (Exception e) {
+            log.error("结束批量下架任务{}失败: {}", jobId, e.getMessage());
+        } finally {
+            offlineJobLease.release(jobId);
+        }
+    }
+    
+    @Override
+    public Map<String, Object> getOfflineJob(Integer userId, Long jobId) {
+        OfflineJob job = offlineJobMapper.findByIdAndUserId(jobId, userId);
+        if (job == null) {
+            return null;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("jobId", job.getId());
+        result.put("status", job.getStatus());
+        result.put("total", job.getTotal());
+        result.put("successCount", job.getSuccessCount());
+        result.put("failedCount", job.getFailedCount());
+        result.put("finished", job.isFinished());
+        result.put("error", job.getError());
+        result.put("createdAt", job.getCreatedAt());
+        result.put("startedAt", job.getStartedAt());
+        result.put("finishedAt", job.getFinishedAt());
+        if (job.isFinished()) {
+            result.put("processedSpuIds", offlineJobMapper.findFullySucceededSpuIds(jobId));
+        }
+        return result;
+    }
+    
+    @Override
+    public PageBean getOfflineJobItems(Integer userId, Long jobId, String status, int page, int pageSize) {
+        if (offlineJobMapper.findByIdAndUserId(jobId, userId) == null) {
+            return null;
+        }
+        int total = offlineJobMapper.countItems(jobId, status);
+        List<OfflineJobItem> rows = offlineJobMapper.findItems(jobId, status, Math.max(0, (page - 1) * pageSize), pageSize);
+        return new PageBean((long) total, rows);
+    }
+    
+    @Override
+    public boolean cancelOfflineJob(Integer userId, Long jobId) {
+        if (offlineJobMapper.cancel(jobId, userId) == 0) {
+            return false;
+        }
+        OfflineJobRun run = runningOfflineJobs.get(jobId);
+        if (run != null) {
+            // 已开始下架的商品执行完，其余的跳过，任务结束时统一标记为已取消
+            run.cancelled = true;
+        } else {
+            finishOfflineJobQuietly(jobId, OfflineJob.CANCELLED, null);
+        }
+        return true;
+    }
+    
+    private static String truncate(String message) {
+        return message != null && message.length() > 500 ? message.substring(0, 500) : message;
+    }
+    
+    /**
+     * 运行中的批量下架任务：下架结果攒批写库，同时累加任务进度
+     */
+    private final class OfflineJobRun {
+        final Long jobId;
+        volatile boolean cancelled;
+        private final List<OfflineJobItem> pending = new ArrayList<>();
+        private long lastFlushNanos = System.nanoTime();
+        
+        OfflineJobRun(Long jobId) {
+            this.jobId = jobId;
+        }
+        
+        void record(Long productId, boolean success, String message) {
+            OfflineJobItem item = new OfflineJobItem();
+            item.setProductId(productId);
+            item.setStatus(success ? OfflineJobItem.SUCCESS : OfflineJobItem.FAILED);
+            item.setMessage(truncate(message));
+            List<OfflineJobItem> batch = null;
+            synchronized (this) {
+                pending.add(item);
+                long now = System.nanoTime();
+                if (pending.size() >= offlineProperties.getResultFlushSize()
+                        || now - lastFlushNanos >= TimeUnit.MILLISECONDS.toNanos(offlineProperties.getResultFlushIntervalMs())) {
+                    batch = new ArrayList<>(pending);
+                    pending.clear();
+                    lastFlushNanos = now;
+                }
+            }
+            if (batch != null) {
+                save(batch);
+            }
+        }
+        
+        void flush() {
+            List<OfflineJobItem> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+            if (!batch.isEmpty()) {
+                save(batch);
+            }
+        }
+        
+        private void save(List<OfflineJobItem> batch) {
+            int success = 0;
+            for (OfflineJobItem item : batch) {
+                if (OfflineJobItem.SUCCESS.equals(item.getStatus())) {
+                    success++;
+                }
+            }
+            try {
+                offlineJobMapper.saveResults(jobId, batch);
+                offlineJobMapper.addProgress(jobId, success, batch.size() - success);
+            } catch (Exception e) {
+                log.error("保存批量下架任务{}的结果失败（{}条）: {}", jobId, batch.size(), e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 准备下架会话：24小时内的parentMsgId和toolId直接复用，否则重新初始化并写回用户配置
+     * @return success为true时包含parentMsgId、toolId和cacheUsed，否则包含error
+     */
+    private Map<String, Object> openOfflineSession(UserConfig config) {
+        try {
+            String agentseller_cookie = config.getAgentseller_cookie();
+            String mallid = config.getMallid();
+            String origin_url = httpProperties.getBaseUrl();
             String parent_msg_id = config.getParent_msg_id();
             String tool_id = config.getTool_id();
             String parent_msg_timestamp = config.getParent_msg_timestamp();
-            String origin_url = "https://agentseller.temu.com";
             
             // 检查缓存是否有效（24小时）
             boolean cache_valid = false;
@@ -347,53 +747,12 @@ public class TemuServiceImpl implements TemuService {
                 return result;
             }
             
-            // 使用多线程处理商品下架
-            int actual_threads = Math.min(maxThreads, productIds.size());
-            ExecutorService executor = Executors.newFixedThreadPool(actual_threads);
-            
-            // 创建final变量用于lambda表达式
-            final String final_parent_msg_id = parent_msg_id;
-            final String final_tool_id = tool_id;
-            
-            try {
-                // 提交所有任务
-                List<CompletableFuture<Map<String, Object>>> futures = productIds.stream()
-                    .map(productId -> CompletableFuture.supplyAsync(() -> 
-                        processSingleProduct(productId, final_parent_msg_id, final_tool_id, agentseller_cookie, mallid, origin_url), executor))
-                    .collect(Collectors.toList());
-                
-                // 等待所有任务完成
-                List<Map<String, Object>> results = futures.stream()
-                    .map(CompletableFuture::join)
-                    .collect(Collectors.toList());
-                
-                // 统计结果
-                long success_count = results.stream().filter(r -> (Boolean) r.get("success")).count();
-                long total_count = results.size();
-                
-                Map<String, Object> result_data = new HashMap<>();
-                result_data.put("success", true);
-                result_data.put("message", String.format("批量下架完成，共处理 %d 个商品，%d 个下架成功", total_count, success_count));
-                result_data.put("parentMsgId", parent_msg_id);
-                result_data.put("toolId", tool_id);
-                result_data.put("cacheUsed", cache_valid);
-                result_data.put("threadInfo", Map.of(
-                    "maxThreads", maxThreads,
-                    "actualThreads", actual_threads,
-                    "productCount", productIds.size()
-                ));
-                result_data.put("results", results);
-                result_data.put("summary", Map.of(
-                    "total", total_count,
-                    "success", success_count,
-                    "failed", total_count - success_count
-                ));
-                
-                return result_data;
-                
-            } finally {
-                executor.shutdown();
-            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("parentMsgId", parent_msg_id);
+            result.put("toolId", tool_id);
+            result.put("cacheUsed", cache_valid);
+            return result;
             
         } catch (Exception e) {
             Map<String, Object> result = new HashMap<>();
@@ -403,29 +762,60 @@ public class TemuServiceImpl implements TemuService {
         }
     }
     
+    /**
+     * 同一违规商品的SKC全部下架成功后，批量标记为已处理，一次写库
+     * 标记失败不影响下架结果
+     */
+    private List<Long> markOfflineProcessed(Integer userId, List<Map<String, Object>> results, Map<Long, Long> spuIds) {
+        if (spuIds == null || spuIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Boolean> allSucceeded = new HashMap<>();
+        for (Map<String, Object> r : results) {
+            Long spuId = spuIds.get((Long) r.get("productId"));
+            if (spuId != null) {
+                allSucceeded.merge(spuId, Boolean.TRUE.equals(r.get("success")), Boolean::logicalAnd);
+            }
+        }
+        Map<Long, Integer> statuses = new HashMap<>();
+        allSucceeded.forEach((spuId, succeeded) -> {
+            if (succeeded) {
+                statuses.put(spuId, 1);
+            }
+        });
+        try {
+            complianceStatusService.updateStatusBatch(userId, statuses);
+            return new ArrayList<>(statuses.keySet());
+        } catch (Exception e) {
+            log.error("下架后标记处理状态失败: {}", e.getMessage());
+            return List.of();
+        }
+    }
+    
     /**
      * 初始化下架会话
      * 参考Python版本的完整实现
      */
     private Map<String, Object> initializeOfflineSession(String cookie, String mallid, String origin_url) {
         try {
-            String init_url = "https://agentseller.temu.com/bg/cute/api/merchantService/chat/sendMessage";
-            String query_url = "https://agentseller.temu.com/bg/cute/api/merchantService/chat/queryMessage";
+            String init_url = httpProperties.getBaseUrl() + "/bg/cute/api/merchantService/chat/sendMessage";
+            String query_url = httpProperties.getBaseUrl() + "/bg/cute/api/merchantService/chat/queryMessage";
             
             // 第一步：发送"商品下架"消息初始化对话
             Map<String, Object> init_payload = new HashMap<>();
             init_payload.put("contentType", 1);
             init_payload.put("content", "商品下架");
             
-            Optional<JsonNode> init_response = networkRequest.post(init_url, init_payload, cookie, mallid, origin_url);
-            if (init_response.isEmpty() || !JsonUtils.getBoolean(init_response.get(), "success")) {
+            Optional<TemuResponse<SendMessageResult>> init_response = networkRequest.post(init_url, init_payload,
+                    cookie, mallid, origin_url, SendMessageResult.class);
+            if (init_response.isEmpty() || !init_response.get().succeeded()) {
                 Map<String, Object> result = new HashMap<>();
                 result.put("success", false);
                 result.put("error", "初始化下架对话失败");
                 return result;
             }
             
-            String init_msg_id = JsonUtils.getString(JsonUtils.getNode(init_response.get(), "result"), "msgId");
+            String init_msg_id = init_response.get().result() != null ? init_response.get().result().msgId() : null;
             if (init_msg_id == null) {
                 Map<String, Object> result = new HashMap<>();
                 result.put("success", false);
@@ -434,46 +824,38 @@ public class TemuServiceImpl implements TemuService {
             }
             
             // 第二步：查询消息获取客服回复（带重试机制）
+            // 轮询间隔由调度线程等待，不占用当前线程之外的线程
             int max_retries = 5;
-            String parent_msg_id = null;
-            String tool_id = null;
+            AtomicBoolean last_query_failed = new AtomicBoolean(false);
+            AtomicReference<String> found_parent_msg_id = new AtomicReference<>();
             
-            for (int retry = 0; retry < max_retries; retry++) {
+            String[] button = resilience.<String[]>poll(() -> {
                 Map<String, Object> query_payload = new HashMap<>();
                 query_payload.put("msgId", init_msg_id);
                 query_payload.put("direction", 2);
                 query_payload.put("limit", 20);
                 
-                Optional<JsonNode> query_response = networkRequest.post(query_url, query_payload, cookie, mallid, origin_url);
-                if (query_response.isEmpty() || !JsonUtils.getBoolean(query_response.get(), "success")) {
-                    if (retry == max_retries - 1) {
-                        Map<String, Object> result = new HashMap<>();
-                        result.put("success", false);
-                        result.put("error", "查询客服回复失败");
-                        return result;
-                    }
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
+                return networkRequest.postAsync(query_url, query_payload, cookie, mallid, origin_url, MessageListResult.class).thenApply(query_response -> {
+                    if (query_response == null || !query_response.succeeded() || query_response.result() == null) {
+                        last_query_failed.set(true);
+                        return null;
                     }
-                    continue;
-                }
-                
-                // 查找包含"发商品"按钮的消息
-                JsonNode message_list = JsonUtils.getNode(JsonUtils.getNode(query_response.get(), "result"), "messageList");
-                if (message_list != null && message_list.isArray()) {
-                    for (JsonNode msg : message_list) {
-                        String content = JsonUtils.getString(msg, "content");
-                        Integer content_type = JsonUtils.getInteger(msg, "contentType");
-                        Integer sender_type = JsonUtils.getInteger(msg, "senderType");
+                    last_query_failed.set(false);
+                    
+                    // 查找包含"发商品"按钮的消息
+                    String parent_msg_id = null;
+                    String tool_id = null;
+                    for (ChatMessage msg : query_response.result().messageList()) {
+                        String content = msg.content();
+                        Integer content_type = msg.contentType();
+                        Integer sender_type = msg.senderType();
                         
                         // 检查是否是客服回复的消息（senderType=1001）
                         if (sender_type != null && sender_type == 1001 && content_type != null && content_type == 6) {
                             try {
                                 // 尝试解析JSON内容
                                 if (content != null && content.contains("toolId") && content.contains("btnText")) {
-                                    parent_msg_id = JsonUtils.getString(msg, "msgId");
+                                    parent_msg_id = msg.msgId();
                                     // 尝试从内容中提取toolId
                                     Pattern toolIdPattern = Pattern.compile("\"toolId\":(\\d+)");
                                     var matcher = toolIdPattern.matcher(content);
@@ -487,22 +869,25 @@ public class TemuServiceImpl implements TemuService {
                             }
                         }
                     }
-                }
-                
-                if (parent_msg_id != null && tool_id != null) {
-                    break;
-                }
-                
-                // 如果没找到，等待后重试
-                if (retry < max_retries - 1) {
-                    try {
-                        Thread.sleep(2000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
+                    
+                    if (parent_msg_id != null) {
+                        found_parent_msg_id.set(parent_msg_id);
                     }
-                }
+                    // 如果没找到，返回null等待后重试
+                    return parent_msg_id != null && tool_id != null ? new String[]{parent_msg_id, tool_id} : null;
+                });
+            }, max_retries, 0, 2000).join();
+            
+            if (button == null && last_query_failed.get()) {
+                Map<String, Object> result = new HashMap<>();
+                result.put("success", false);
+                result.put("error", "查询客服回复失败");
+                return result;
             }
             
+            String parent_msg_id = button != null ? button[0] : found_parent_msg_id.get();
+            String tool_id = button != null ? button[1] : null;
+            
             // 如果找不到按钮消息，尝试使用初始消息ID作为备用方案
             if (parent_msg_id == null) {
                 parent_msg_id = init_msg_id;
@@ -510,18 +895,15 @@ public class TemuServiceImpl implements TemuService {
             
             // 如果还没有tool_id，重新获取工具列表
             if (tool_id == null) {
-                String tool_list_url = "https://agentseller.temu.com/api/kiana/marvel-supplier/api/ultraman/chat/reception/querySelfServiceTools";
-                Optional<JsonNode> tool_list_resp = networkRequest.post(tool_list_url, new HashMap<>(), cookie, mallid, origin_url);
+                String tool_list_url = httpProperties.getBaseUrl() + "/api/kiana/marvel-supplier/api/ultraman/chat/reception/querySelfServiceTools";
+                Optional<TemuResponse<SelfServiceToolList>> tool_list_resp = networkRequest.post(tool_list_url, new HashMap<>(),
+                        cookie, mallid, origin_url, SelfServiceToolList.class);
                 
-                if (tool_list_resp.isPresent() && JsonUtils.getBoolean(tool_list_resp.get(), "success")) {
-                    JsonNode tools = JsonUtils.getNode(JsonUtils.getNode(tool_list_resp.get(), "result"), "list");
-                    if (tools != null && tools.isArray()) {
-                        for (JsonNode tool : tools) {
-                            String tool_name = JsonUtils.getString(tool, "toolName");
-                            if ("商品下架".equals(tool_name)) {
-                                tool_id = JsonUtils.getString(tool, "toolId");
-                                break;
-                            }
+                if (tool_list_resp.isPresent() && tool_list_resp.get().succeeded() && tool_list_resp.get().result() != null) {
+                    for (SelfServiceToolList.Tool tool : tool_list_resp.get().result().list()) {
+                        if ("商品下架".equals(tool.toolName())) {
+                            tool_id = tool.toolId();
+                            break;
                         }
                     }
                 }
@@ -549,61 +931,96 @@ public class TemuServiceImpl implements TemuService {
         }
     }
     
+    /**
+     * 把商品交给下架执行器，单个商品按流水线执行
+     * 用户并发只占用到商品进入等待结果阶段为止，等待期间该用户的后续商品继续查询、预检查和发送
+     * cancelled返回true时跳过尚未开始的商品，其结果为null
+     */
+    private List<CompletableFuture<Map<String, Object>>> submitOfflineProducts(Integer userId, int maxThreads, List<Long> productIds,
+                                                                             Map<Long, Long> spuIds, BooleanSupplier cancelled, String parent_msg_id, String tool_id,
+                                                                             String cookie, String mallid, String origin_url) {
+        List<Supplier<CompletableFuture<CompletableFuture<Map<String, Object>>>>> tasks = productIds.stream()
+            .<Supplier<CompletableFuture<CompletableFuture<Map<String, Object>>>>>map(productId -> () -> {
+                if (cancelled.getAsBoolean()) {
+                    return CompletableFuture.completedFuture(CompletableFuture.completedFuture(null));
+                }
+                OfflineProduct product = new OfflineProduct(productId, spuIds != null ? spuIds.get(productId) : null);
+                CompletableFuture<Map<String, Object>> result = processSingleProduct(product, parent_msg_id, tool_id, cookie, mallid, origin_url);
+                return product.confirming.thenApply(ignored -> result);
+            })
+            .collect(Collectors.toList());
+        return offlineExecutor.submitAllAsync(userId, maxThreads, tasks).stream()
+            .map(future -> future.thenCompose(Function.identity()))
+            .collect(Collectors.toList());
+    }
+    
     /**
      * 处理单个商品的下架
-     * 参考Python版本的完整实现，包含轮询查询结果
+     * 依次经过流水线的四个阶段：查询商品信息、预检查、发送下架消息、等待下架结果，某一步失败时跳过后续阶段
      */
-    private Map<String, Object> processSingleProduct(Long productId, String parent_msg_id, String tool_id,
-                                                   String cookie, String mallid, String origin_url) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("productId", productId);
-        result.put("success", false);
-        result.put("message", "");
-        result.put("details", new HashMap<>());
+    private CompletableFuture<Map<String, Object>> processSingleProduct(OfflineProduct product, String parent_msg_id, String tool_id,
+                                                                      String cookie, String mallid, String origin_url) {
+        Map<String, Object> result = product.result;
+        Long productId = product.productId;
         
-        try {
-            // 1. 查询商品基础信息
-            String product_info_url = "https://agentseller.temu.com/api/kiana/marvel-supplier/api/ultraman/chat/reception/queryProductSkcBasicInfo";
+        // 1. 查询商品基础信息，商品列表和违规商品列表中见过的直接用缓存
+        OfflinePipeline.Step<OfflineProduct> info = p -> {
+            ProductSkcBasicInfo cached = productInfoCache.get(mallid, productId, p.spuId);
+            if (cached != null) {
+                p.productName = cached.productName();
+                p.productImg = cached.productPicture();
+                return CompletableFuture.completedFuture(true);
+            }
+            String product_info_url = httpProperties.getBaseUrl() + "/api/kiana/marvel-supplier/api/ultraman/chat/reception/queryProductSkcBasicInfo";
             Map<String, Object> product_info_payload = new HashMap<>();
             product_info_payload.put("productSkcId", productId);
             
-            Optional<JsonNode> product_info_response = networkRequest.post(product_info_url, product_info_payload, cookie, mallid, origin_url);
-            if (product_info_response.isEmpty() || !JsonUtils.getBoolean(product_info_response.get(), "success")) {
-                result.put("message", "查询商品信息失败");
-                return result;
-            }
-            
-            JsonNode product_info = JsonUtils.getNode(product_info_response.get(), "result");
-            String product_name = JsonUtils.getString(product_info, "productName");
-            String product_img = JsonUtils.getString(product_info, "productPicture");
-            
-            // 2. 预检查是否可以下架
-            String precheck_url = "https://agentseller.temu.com/api/kiana/marvel-supplier/api/ultraman/chat/reception/queryPreInterceptForToolSubmit";
+            return networkRequest.postAsync(product_info_url, product_info_payload, cookie, mallid, origin_url,
+                    ProductSkcBasicInfo.class).thenApply(product_info_response -> {
+                if (product_info_response == null || !product_info_response.succeeded()) {
+                    result.put("message", "查询商品信息失败");
+                    return false;
+                }
+                ProductSkcBasicInfo product_info = product_info_response.result();
+                productInfoCache.put(mallid, productId, product_info);
+                p.productName = product_info != null ? product_info.productName() : null;
+                p.productImg = product_info != null ? product_info.productPicture() : null;
+                return true;
+            });
+        };
+        
+        // 2. 预检查是否可以下架
+        OfflinePipeline.Step<OfflineProduct> precheck = p -> {
+            String precheck_url = httpProperties.getBaseUrl() + "/api/kiana/marvel-supplier/api/ultraman/chat/reception/queryPreInterceptForToolSubmit";
             Map<String, Object> precheck_payload = new HashMap<>();
             precheck_payload.put("toolId", tool_id);
             precheck_payload.put("dataId", String.valueOf(productId));
             
-            Optional<JsonNode> precheck_response = networkRequest.post(precheck_url, precheck_payload, cookie, mallid, origin_url);
-            if (precheck_response.isEmpty() || !JsonUtils.getBoolean(precheck_response.get(), "success")) {
-                result.put("message", "预检查失败");
-                return result;
-            }
-            
-            Integer intercept_code = JsonUtils.getInteger(JsonUtils.getNode(precheck_response.get(), "result"), "interceptCode");
-            if (intercept_code == null || intercept_code != 0) {
-                String intercept_msg = JsonUtils.getString(JsonUtils.getNode(precheck_response.get(), "result"), "interceptMsg");
-                result.put("message", "无法下架：" + (intercept_msg != null ? intercept_msg : "未知错误"));
-                return result;
-            }
-            
-            // 3. 发送商品信息进行下架
+            return networkRequest.postAsync(precheck_url, precheck_payload, cookie, mallid, origin_url,
+                    PrecheckResult.class).thenApply(precheck_response -> {
+                if (precheck_response == null || !precheck_response.succeeded()) {
+                    result.put("message", "预检查失败");
+                    return false;
+                }
+                PrecheckResult precheck_result = precheck_response.result();
+                if (precheck_result == null || !precheck_result.passed()) {
+                    String intercept_msg = precheck_result != null ? precheck_result.interceptMsg() : null;
+                    result.put("message", "无法下架：" + (intercept_msg != null ? intercept_msg : "未知错误"));
+                    return false;
+                }
+                return true;
+            });
+        };
+        
+        // 3. 发送商品信息进行下架
+        OfflinePipeline.Step<OfflineProduct> send = p -> {
             Map<String, Object> offline_content = new HashMap<>();
-            offline_content.put("name", product_name != null ? product_name : "商品名称");
-            offline_content.put("img", product_img != null ? product_img : "商品图片");
+            offline_content.put("name", p.productName != null ? p.productName : "商品名称");
+            offline_content.put("img", p.productImg != null ? p.productImg : "商品图片");
             offline_content.put("dataType", 1);
             offline_content.put("dataId", String.valueOf(productId));
             offline_content.put("toolId", tool_id);
-            String offline_url = "https://agentseller.temu.com/bg/cute/api/merchantService/chat/sendMessage";
+            String offline_url = httpProperties.getBaseUrl() + "/bg/cute/api/merchantService/chat/sendMessage";
             Map<String, Object> offline_payload = new HashMap<>();
             // 确保parentMsgId是字符串类型，与Python版本保持一致
             offline_payload.put("parentMsgId", String.valueOf(parent_msg_id));
@@ -615,98 +1032,93 @@ public class TemuServiceImpl implements TemuService {
             } catch (Exception e) {
                 log.error("序列化content失败: {}", e.getMessage());
                 result.put("message", "序列化商品信息失败");
-                return result;
+                return CompletableFuture.completedFuture(false);
             }
             
-            Optional<JsonNode> offline_response = networkRequest.post(offline_url, offline_payload, cookie, mallid, origin_url);
-            if (offline_response.isEmpty() || !JsonUtils.getBoolean(offline_response.get(), "success")) {
-                result.put("message", "发送下架请求失败");
-                return result;
-            }
-            
-            String offline_msg_id = JsonUtils.getString(JsonUtils.getNode(offline_response.get(), "result"), "msgId");
-            
-            // 4. 轮询查询下架结果
-            String query_url = "https://agentseller.temu.com/bg/cute/api/merchantService/chat/queryMessage";
-            int max_retries = 10;
-            int retry_count = 0;
-            boolean offline_success = false;
-            
-            while (retry_count < max_retries) {
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+            return networkRequest.postAsync(offline_url, offline_payload, cookie, mallid, origin_url,
+                    SendMessageResult.class).thenApply(offline_response -> {
+                if (offline_response == null || !offline_response.succeeded()
+                        || offline_response.result() == null || offline_response.result().msgId() == null) {
+                    result.put("message", "发送下架请求失败");
+                    return false;
                 }
-                
-                // 查询下架结果
-                Map<String, Object> result_query_payload = new HashMap<>();
-                // 确保msgId是字符串类型，与Python版本保持一致
-                result_query_payload.put("msgId", String.valueOf(offline_msg_id));
-                result_query_payload.put("direction", 2);
-                result_query_payload.put("limit", 20);
-                
-                Optional<JsonNode> result_query = networkRequest.post(query_url, result_query_payload, cookie, mallid, origin_url);
-                if (result_query.isPresent() && JsonUtils.getBoolean(result_query.get(), "success")) {
-                    JsonNode result_messages = JsonUtils.getNode(JsonUtils.getNode(result_query.get(), "result"), "messageList");
-                    
-                    // 查找当前商品的下架结果
-                    String current_product_result = null;
-                    if (result_messages != null && result_messages.isArray()) {
-                        for (JsonNode msg : result_messages) {
-                            String content = JsonUtils.getString(msg, "content");
-                            if (content != null && content.contains("您好")) {
-                                // 检查是否包含当前商品ID（支持多种格式）
-                                if (content.contains("SKC ID：" + productId) || 
-                                    content.contains("SKC ID:" + productId) ||
-                                    content.contains("【SKC ID：" + productId + "】")) {
-                                    current_product_result = content;
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                    
-                    // 如果找到了当前商品的结果
-                    if (current_product_result != null) {
-                        if (current_product_result.contains("已下架")) {
-                            offline_success = true;
-                            result.put("message", current_product_result);
-                        } else if (current_product_result.contains("暂时无法操作下架")) {
-                            result.put("message", current_product_result);
-                        } else if (current_product_result.contains("已在您的上次咨询后处理成功")) {
-                            result.put("message", current_product_result);
-                            offline_success = true;  // 视为成功
-                        } else {
-                            result.put("message", current_product_result);
-                        }
-                        break;
+                p.offlineMsgId = offline_response.result().msgId();
+                return true;
+            });
+        };
+        
+        // 4. 等待下架结果：同一会话的商品共用一个轮询，按SKC ID分发回复
+        OfflinePipeline.Step<OfflineProduct> confirm = p -> {
+            p.confirming.complete(null);
+            p.waitStarted = System.currentTimeMillis();
+            return offlineResultPoller.await(mallid, parent_msg_id, cookie, origin_url, p.offlineMsgId, productId)
+                    .thenApply(wait_result -> {
+                p.retryCount = wait_result.polls();
+                String current_product_result = wait_result.reply();
+                boolean offline_success = false;
+                // 如果找到了当前商品的结果
+                if (current_product_result != null) {
+                    if (current_product_result.contains("已下架")) {
+                        offline_success = true;
+                        result.put("message", current_product_result);
+                    } else if (current_product_result.contains("暂时无法操作下架")) {
+                        result.put("message", current_product_result);
+                    } else if (current_product_result.contains("已在您的上次咨询后处理成功")) {
+                        result.put("message", current_product_result);
+                        offline_success = true;  // 视为成功
+                    } else {
+                        result.put("message", current_product_result);
                     }
-                    
-                    retry_count++;
                 } else {
-                    retry_count++;
+                    result.put("message", "查询下架结果超时");
                 }
+                result.put("success", offline_success);
+                return true;
+            });
+        };
+        
+        return offlinePipeline.run(product, List.of(info, precheck, send, confirm)).handle((p, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                result.put("success", false);
+                result.put("message", "处理异常：" + cause.getMessage());
             }
-            
-            if (retry_count >= max_retries) {
-                result.put("message", "查询下架结果超时");
-            }
-            
-            result.put("success", offline_success);
             Map<String, Object> details = new HashMap<>();
-            details.put("productName", product_name);
-            details.put("productImg", product_img);
-            details.put("offlineMsgId", offline_msg_id);
-            details.put("retryCount", retry_count);
+            details.put("productName", product.productName);
+            details.put("productImg", product.productImg);
+            details.put("offlineMsgId", product.offlineMsgId);
+            // 等待结果期间经历的轮询次数
+            details.put("retryCount", product.retryCount);
+            details.put("waitMs", product.waitStarted > 0 ? System.currentTimeMillis() - product.waitStarted : 0);
             result.put("details", details);
-            
-        } catch (Exception e) {
-            result.put("message", "处理异常：" + e.getMessage());
-        }
+            return result;
+        }).whenComplete((r, e) -> product.confirming.complete(null));
+    }
+    
+    /**
+     * 流水线中单个商品的状态，各阶段依次读写
+     */
+    private static final class OfflineProduct {
+        final Long productId;
+        // 违规商品的spu_id，可能为null
+        final Long spuId;
+        final Map<String, Object> result = new HashMap<>();
+        // 进入等待结果阶段（或提前结束）时完成，用于释放用户并发
+        final CompletableFuture<Void> confirming = new CompletableFuture<>();
+        volatile String productName;
+        volatile String productImg;
+        volatile String offlineMsgId;
+        volatile long waitStarted;
+        volatile int retryCount;
         
-        return result;
+        OfflineProduct(Long productId, Long spuId) {
+            this.productId = productId;
+            this.spuId = spuId;
+            result.put("productId", productId);
+            result.put("success", false);
+            result.put("message", "");
+            result.put("details", new HashMap<>());
+        }
     }
     
     // markProductStatus方法实现
@@ -4,6 +4,7 @@ import com.czx.mapper.UserConfigMapper;
 import com.czx.pojo.Result;
 import com.czx.pojo.UserConfig;
 import com.czx.service.UserConfigService;
+import com.czx.utils.CompliancePageCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -15,6 +16,9 @@ public class UserConfigServiceImpl implements UserConfigService {
     @Autowired
     private UserConfigMapper userConfigMapper;
     
+    @Autowired
+    private CompliancePageCache compliancePageCache;
+    
     @Override
     public boolean saveOrUpdateConfig(UserConfig config) {
         try {
@@ -37,6 +41,7 @@ public class UserConfigServiceImpl implements UserConfigService {
                     existingConfig.setParent_msg_id(null);
                     existingConfig.setParent_msg_timestamp(null);
                     existingConfig.setTool_id(null);
+                    compliancePageCache.invalidateUser(config.getUser_id());
                 }
                 
                 userConfigMapper.update(existingConfig);
@@ -0,0 +1,329 @@
+package com.czx.sync;
+
+import com.czx.config.TemuHttpProperties;
+import com.czx.config.TemuSyncProperties;
+import com.czx.mapper.ComplianceMirrorMapper;
+import com.czx.mapper.UserConfigMapper;
+import com.czx.pojo.ComplianceMirrorItem;
+import com.czx.pojo.ComplianceSyncState;
+import com.czx.pojo.UserConfig;
+import com.czx.pojo.temu.ComplianceItem;
+import com.czx.pojo.temu.ComplianceListResult;
+import com.czx.utils.NetworkRequest;
+import com.czx.utils.StatusWriteBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 违规商品后台同步：定时把每个店铺的entrance/list全量翻页拉取到compliance_item表
+ * 每个店铺同时请求pageConcurrency页，按页序写库；内容没变的商品不重写，上游已不存在的商品在完整同步后删除
+ * 同步成功且未过期的店铺，违规列表的筛选和分页直接查本地库并关联compliance_status，不再请求上游
+ */
+@Component
+public class ComplianceMirrorSync {
+
+    private static final Logger log = LoggerFactory.getLogger(ComplianceMirrorSync.class);
+    private static final String LIST_PATH = "/mms/tmod_punish/agent/merchant_appeal/entrance/list";
+
+    private final TemuSyncProperties properties;
+    private final TemuHttpProperties httpProperties;
+    private final NetworkRequest networkRequest;
+    private final ComplianceMirrorMapper mirrorMapper;
+    private final UserConfigMapper userConfigMapper;
+    private final StatusWriteBuffer statusWriteBuffer;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService syncExecutor;
+    // 正在同步的店铺，同一店铺不重复提交
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    // 店铺 -> 上次同步成功的时间（毫秒），0表示没有可用的本地数据
+    private final Map<String, Long> lastSuccess = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> task;
+
+    public ComplianceMirrorSync(TemuSyncProperties properties, TemuHttpProperties httpProperties,
+                                NetworkRequest networkRequest, ComplianceMirrorMapper mirrorMapper,
+                                UserConfigMapper userConfigMapper, StatusWriteBuffer statusWriteBuffer,
+                                @Qualifier("upstreamScheduler") ScheduledExecutorService scheduler) {
+        this.properties = properties;
+        this.httpProperties = httpProperties;
+        this.networkRequest = networkRequest;
+        this.mirrorMapper = mirrorMapper;
+        this.userConfigMapper = userConfigMapper;
+        this.statusWriteBuffer = statusWriteBuffer;
+        this.scheduler = scheduler;
+        this.syncExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getMallConcurrency()),
+                new CustomizableThreadFactory("compliance-sync-"));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        task = scheduler.scheduleWithFixedDelay(this::syncAll, properties.getInitialDelaySeconds(),
+                properties.getIntervalSeconds(), TimeUnit.SECONDS);
+        log.info("违规商品后台同步已开启，间隔{}秒", properties.getIntervalSeconds());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (task != null) {
+            task.cancel(false);
+        }
+        syncExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交所有已配置店铺的同步任务，多个用户绑定同一店铺时使用最近更新的Cookie
+     */
+    public void syncAll() {
+        try {
+            Map<String, UserConfig> malls = new LinkedHashMap<>();
+            for (UserConfig config : userConfigMapper.findAllWithMall()) {
+                malls.putIfAbsent(config.getMallid(), config);
+            }
+            malls.values().forEach(this::submit);
+        } catch (Exception e) {
+            log.error("读取店铺配置失败，跳过本轮同步: {}", e.getMessage());
+        }
+    }
+
+    public void submit(UserConfig config) {
+        String mallid = config.getMallid();
+        if (!running.add(mallid)) {
+            return;
+        }
+        try {
+            syncExecutor.execute(() -> {
+                try {
+                    syncMall(config);
+                } finally {
+                    running.remove(mallid);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.remove(mallid);
+        }
+    }
+
+    void syncMall(UserConfig config) {
+        String mallid = config.getMallid();
+        long started = System.currentTimeMillis();
+        Deque<CompletableFuture<ComplianceListResult>> window = new ArrayDeque<>();
+        try {
+            Map<Long, Integer> existing = new HashMap<>();
+            for (ComplianceMirrorItem row : mirrorMapper.findHashesByMallid(mallid)) {
+                existing.put(row.getSpuId(), row.getContentHash());
+            }
+            Set<Long> seen = new HashSet<>();
+            int pageSize = properties.getPageSize();
+
+            ComplianceListResult first = fetchPage(config, 1).join();
+            int total = first.total() != null ? first.total() : 0;
+            int pages = (total + pageSize - 1) / pageSize;
+            int written = apply(mallid, first, 1, existing, seen);
+
+            // 最多同时请求pageConcurrency页，按页序消费写库
+            int next = 2;
+            int page = 2;
+            while (next <= pages || !window.isEmpty()) {
+                while (next <= pages && window.size() < Math.max(1, properties.getPageConcurrency())) {
+                    window.add(fetchPage(config, next++));
+                }
+                written += apply(mallid, window.poll().join(), page++, existing, seen);
+            }
+
+            // 翻页期间列表有变化时可能漏掉商品，只有完整看到全部商品才删除上游已不存在的
+            int removed = 0;
+            if (seen.size() >= total) {
+                List<Long> gone = existing.keySet().stream().filter(id -> !seen.contains(id)).collect(Collectors.toList());
+                for (int from = 0; from < gone.size(); from += properties.getWriteBatchSize()) {
+                    mirrorMapper.deleteBySpuIds(mallid, gone.subList(from, Math.min(gone.size(), from + properties.getWriteBatchSize())));
+                }
+                removed = gone.size();
+            }
+
+            ComplianceSyncState state = new ComplianceSyncState();
+            state.setMallid(mallid);
+            state.setTotal(total);
+            state.setLastSuccessAt(LocalDateTime.now());
+            mirrorMapper.saveState(state);
+            lastSuccess.put(mallid, System.currentTimeMillis());
+            log.info("店铺{}违规商品同步完成: 共{}条, 写入{}条, 删除{}条, 耗时{}ms",
+                    mallid, total, written, removed, System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            window.forEach(future -> future.cancel(false));
+            String message = rootMessage(e);
+            log.warn("店铺{}违规商品同步失败: {}", mallid, message);
+            recordFailure(mallid, message);
+        }
+    }
+
+    private CompletableFuture<ComplianceListResult> fetchPage(UserConfig config, int page) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("page_num", page);
+        payload.put("page_size", properties.getPageSize());
+        payload.put("target_type", "goods");
+        return networkRequest.postAsync(httpProperties.getBaseUrl() + LIST_PATH, payload,
+                        config.getAgentseller_cookie(), config.getMallid(), httpProperties.getBaseUrl(), ComplianceListResult.class)
+                .thenApply(body -> {
+                    if (body == null) {
+                        throw new IllegalStateException("获取第" + page + "页失败");
+                    }
+                    if (!body.succeeded()) {
+                        throw new IllegalStateException("获取第" + page + "页失败: " + body.errorMessage());
+                    }
+                    if (body.result() == null || body.result().items() == null) {
+                        throw new IllegalStateException("第" + page + "页数据格式错误");
+                    }
+                    return body.result();
+                });
+    }
+
+    /**
+     * 只写入新增或内容有变化的商品，返回写入条数
+     */
+    private int apply(String mallid, ComplianceListResult result, int page, Map<Long, Integer> existing, Set<Long> seen) {
+        List<ComplianceMirrorItem> changed = new ArrayList<>();
+        List<ComplianceItem> items = result.items();
+        for (int i = 0; i < items.size(); i++) {
+            ComplianceItem item = items.get(i);
+            if (item.spuId() == null || !seen.add(item.spuId())) {
+                continue;
+            }
+            ComplianceMirrorItem row = toRow(mallid, item, (page - 1) * properties.getPageSize() + i);
+            if (!Objects.equals(existing.get(item.spuId()), row.getContentHash())) {
+                changed.add(row);
+            }
+        }
+        for (int from = 0; from < changed.size(); from += properties.getWriteBatchSize()) {
+            mirrorMapper.upsertBatch(changed.subList(from, Math.min(changed.size(), from + properties.getWriteBatchSize())));
+        }
+        return changed.size();
+    }
+
+    private void recordFailure(String mallid, String message) {
+        try {
+            ComplianceSyncState state = mirrorMapper.findState(mallid);
+            if (state == null) {
+                state = new ComplianceSyncState();
+                state.setMallid(mallid);
+                state.setTotal(0);
+            }
+            state.setLastError(message != null && message.length() > 500 ? message.substring(0, 500) : message);
+            mirrorMapper.saveState(state);
+        } catch (Exception e) {
+            log.warn("记录店铺{}同步状态失败: {}", mallid, e.getMessage());
+        }
+    }
+
+    /**
+     * 店铺是否有未过期的本地数据可直接查询
+     */
+    public boolean isServing(String mallid) {
+        if (!properties.isEnabled() || mallid == null) {
+            return false;
+        }
+        long syncedAt = lastSuccess.computeIfAbsent(mallid, this::loadLastSuccess);
+        return syncedAt > 0 && System.currentTimeMillis() - syncedAt < TimeUnit.SECONDS.toMillis(properties.getServeMaxAgeSeconds());
+    }
+
+    private long loadLastSuccess(String mallid) {
+        try {
+            ComplianceSyncState state = mirrorMapper.findState(mallid);
+            if (state == null || state.getLastSuccessAt() == null) {
+                return 0;
+            }
+            return state.getLastSuccessAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            log.warn("读取店铺{}同步状态失败: {}", mallid, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 从本地库查询一页违规商品，处理状态按用户关联compliance_status
+     */
+    public ComplianceListResult queryPage(Integer userId, String mallid, Integer violationType, int page, int pageSize) {
+        int offset = Math.max(0, (page - 1) * pageSize);
+        List<ComplianceMirrorItem> rows = mirrorMapper.findPage(userId, mallid, violationType, offset, pageSize);
+        int total = mirrorMapper.count(mallid, violationType);
+        // 关联的是库里的状态，叠加write-behind缓冲中尚未落库的写入
+        List<Long> spuIds = rows.stream().map(ComplianceMirrorItem::getSpuId).collect(Collectors.toList());
+        Map<Long, Integer> buffered = new HashMap<>();
+        statusWriteBuffer.overlay(userId, spuIds, buffered);
+        List<ComplianceItem> items = new ArrayList<>(rows.size());
+        for (ComplianceMirrorItem row : rows) {
+            ComplianceItem item = toItem(row);
+            Integer status = buffered.get(row.getSpuId());
+            items.add(status != null ? item.withProcessedStatus(status) : item);
+        }
+        return new ComplianceListResult(total, items);
+    }
+
+    static ComplianceMirrorItem toRow(String mallid, ComplianceItem item, int rank) {
+        ComplianceMirrorItem row = new ComplianceMirrorItem();
+        row.setMallid(mallid);
+        row.setSpuId(item.spuId());
+        row.setGoodsName(item.goodsName());
+        row.setGoodsImgUrl(item.goodsImgUrl());
+        row.setSiteNum(item.siteNum());
+        row.setSiteIds(item.punishDetailList().stream()
+                .map(detail -> String.valueOf(detail.siteId()))
+                .collect(Collectors.joining(",")));
+        row.setViolationType(item.violationType());
+        row.setViolationDesc(item.violationDesc());
+        row.setPunishNum(item.punishNum());
+        row.setUpstreamRank(rank);
+        // 不含位置：列表前面插入新商品时，后面的商品不必全部重写
+        row.setContentHash(Objects.hash(row.getGoodsName(), row.getGoodsImgUrl(), row.getSiteNum(), row.getSiteIds(),
+                row.getViolationType(), row.getViolationDesc(), row.getPunishNum()));
+        return row;
+    }
+
+    static ComplianceItem toItem(ComplianceMirrorItem row) {
+        List<ComplianceItem.PunishDetail> details = new ArrayList<>();
+        if (row.getSiteIds() != null && !row.getSiteIds().isEmpty()) {
+            for (String siteId : row.getSiteIds().split(",")) {
+                details.add(new ComplianceItem.PunishDetail("null".equals(siteId) ? null : Integer.valueOf(siteId)));
+            }
+        }
+        return new ComplianceItem(row.getSpuId(), row.getGoodsName(), row.getGoodsImgUrl(), row.getSiteNum(), details,
+                row.getViolationType(), row.getViolationDesc(), row.getPunishNum(), row.getProcessedStatus());
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+}
@@ -0,0 +1,244 @@
+package com.czx.utils;
+
+import com.czx.config.TemuCacheProperties;
+import com.czx.pojo.temu.ComplianceItem;
+import com.czx.pojo.temu.ComplianceListResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 违规商品列表分块缓存，key为(用户, 店铺, 违规类型, 块序号, 块大小)
+ * 上游按固定大小、对齐的块请求，任意(页码, 每页条数)的窗口由缓存的块拼出，只请求缺失的块且并行请求，
+ * 切换每页条数或翻页时尽量复用已有数据
+ * 缓存的是已合并本地处理状态的结果；处理状态变更时原地更新包含该商品的块，不必重新请求上游
+ * 返回一页后可在低优先级线程上预取之后几页所在的块，使顺序翻页时直接命中缓存
+ * 按缓存的商品条数限制大小
+ *
+ * 指标：temu.cache.prefetch 预取结果（loaded已加载，skipped上游有压力放弃，dropped排队已满丢弃，failed失败）
+ */
+@Slf4j
+@Component
+public class CompliancePageCache {
+
+    private final TemuCacheProperties properties;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final ThreadPoolExecutor prefetchExecutor;
+    private final TtlCache<Key, ComplianceListResult> cache;
+    // 已提交预取的块，避免连续翻页时重复预取
+    private final Set<Key> prefetching = ConcurrentHashMap.newKeySet();
+    private final Counter prefetchLoaded;
+    private final Counter prefetchSkipped;
+    private final Counter prefetchDropped;
+    private final Counter prefetchFailed;
+
+    public CompliancePageCache(TemuCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.refreshExecutor = new ThreadPoolExecutor(properties.getRefreshThreads(), properties.getRefreshThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getRefreshQueueCapacity()),
+                new CustomizableThreadFactory("compliance-cache-refresh-"));
+        CustomizableThreadFactory prefetchThreadFactory = new CustomizableThreadFactory("compliance-prefetch-");
+        prefetchThreadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        this.prefetchExecutor = new ThreadPoolExecutor(properties.getPrefetchThreads(), properties.getPrefetchThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getPrefetchQueueCapacity()), prefetchThreadFactory);
+        this.prefetchLoaded = prefetchCounter(meterRegistry, "loaded");
+        this.prefetchSkipped = prefetchCounter(meterRegistry, "skipped");
+        this.prefetchDropped = prefetchCounter(meterRegistry, "dropped");
+        this.prefetchFailed = prefetchCounter(meterRegistry, "failed");
+        this.cache = new TtlCache<>("compliance", TimeUnit.SECONDS.toMillis(properties.getComplianceTtlSeconds()),
+                TimeUnit.SECONDS.toMillis(properties.getComplianceStaleSeconds()), properties.getComplianceMaxItems(),
+                CompliancePageCache::weigh, refreshExecutor, meterRegistry);
+    }
+
+    /**
+     * 读取一页，fetcher按(上游页码, 每页条数)异步请求一块上游原始数据，enricher在写入缓存前合并处理状态
+     * 总数取窗口第一块的总数
+     */
+    public ComplianceListResult getPage(Integer userId, String mallid, Integer violationType, int page, int pageSize,
+                                        BlockFetcher fetcher, UnaryOperator<ComplianceListResult> enricher) {
+        if (properties.getComplianceTtlSeconds() <= 0 || page < 1 || pageSize < 1) {
+            // 不缓存时按原样请求，不多取数据
+            return enricher.apply(join(fetcher.fetch(page, pageSize)));
+        }
+        int blockSize = properties.getComplianceBlockSize() > 0 ? properties.getComplianceBlockSize() : pageSize;
+        long from = (long) (page - 1) * pageSize;
+        long to = from + pageSize;
+        int firstBlock = (int) (from / blockSize);
+        int blockCount = (int) ((to - 1) / blockSize) - firstBlock + 1;
+
+        // 先取出已缓存的块，缺失的块同时发起请求
+        Key[] keys = new Key[blockCount];
+        ComplianceListResult[] blocks = new ComplianceListResult[blockCount];
+        List<CompletableFuture<ComplianceListResult>> pending = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            int blockPage = firstBlock + i + 1;
+            keys[i] = new Key(userId, mallid, violationType, firstBlock + i, blockSize);
+            blocks[i] = cache.getIfPresent(keys[i], () -> enricher.apply(join(fetcher.fetch(blockPage, blockSize))));
+            pending.add(blocks[i] == null ? fetcher.fetch(blockPage, blockSize) : null);
+        }
+        // 处理状态在写入缓存时才合并，期间发生的状态变更不会被旧结果覆盖
+        for (int i = 0; i < blockCount; i++) {
+            CompletableFuture<ComplianceListResult> future = pending.get(i);
+            if (future != null) {
+                blocks[i] = cache.get(keys[i], () -> enricher.apply(join(future)));
+            }
+        }
+
+        List<ComplianceItem> items = new ArrayList<>(pageSize);
+        for (int i = 0; i < blockCount; i++) {
+            List<ComplianceItem> blockItems = blocks[i].items();
+            long blockStart = (long) (firstBlock + i) * blockSize;
+            int start = (int) Math.max(0, from - blockStart);
+            int end = (int) Math.min(blockItems.size(), to - blockStart);
+            for (int j = start; j < end; j++) {
+                items.add(blockItems.get(j));
+            }
+        }
+        return new ComplianceListResult(blocks[0].total(), items);
+    }
+
+    /**
+     * 处理状态变更后同步更新该用户所有包含此商品的缓存分页
+     */
+    public void updateStatus(Integer userId, Long productId, Integer status) {
+        updateStatuses(userId, Map.of(productId, status));
+    }
+
+    /**
+     * 批量更新，所有缓存分页只遍历一次
+     */
+    public void updateStatuses(Integer userId, Map<Long, Integer> statuses) {
+        cache.update(key -> Objects.equals(key.userId(), userId), result -> withStatuses(result, statuses));
+    }
+
+    /**
+     * 清除用户的全部缓存分页，例如切换店铺或更新Cookie后
+     */
+    public void invalidateUser(Integer userId) {
+        cache.invalidate(key -> Objects.equals(key.userId(), userId));
+    }
+
+    /**
+     * 在后台预取当前页之后compliancePrefetchPages页所在的块，已缓存或正在预取的块、超出总数的部分跳过
+     * 执行前由headroom判断上游限流器是否有富余，有压力时放弃本次预取；排队已满时直接丢弃
+     */
+    public void prefetch(Integer userId, String mallid, Integer violationType, int page, int pageSize, Integer total,
+                         BlockFetcher fetcher, UnaryOperator<ComplianceListResult> enricher, BooleanSupplier headroom) {
+        int pages = properties.getCompliancePrefetchPages();
+        if (properties.getComplianceTtlSeconds() <= 0 || pages <= 0 || page < 1 || pageSize < 1) {
+            return;
+        }
+        int blockSize = properties.getComplianceBlockSize() > 0 ? properties.getComplianceBlockSize() : pageSize;
+        long from = (long) page * pageSize;
+        long to = from + (long) pages * pageSize;
+        if (total != null) {
+            to = Math.min(to, total);
+        }
+        if (from >= to) {
+            return;
+        }
+        for (int block = (int) (from / blockSize); block <= (to - 1) / blockSize; block++) {
+            Key key = new Key(userId, mallid, violationType, block, blockSize);
+            if (cache.containsFresh(key) || !prefetching.add(key)) {
+                continue;
+            }
+            int blockPage = block + 1;
+            try {
+                prefetchExecutor.execute(() -> {
+                    try {
+                        if (!headroom.getAsBoolean()) {
+                            prefetchSkipped.increment();
+                            return;
+                        }
+                        cache.get(key, () -> enricher.apply(join(fetcher.fetch(blockPage, blockSize))));
+                        prefetchLoaded.increment();
+                    } catch (Exception e) {
+                        prefetchFailed.increment();
+                        log.debug("预取违规商品失败，店铺: {}，页码: {}: {}", mallid, blockPage, e.getMessage());
+                    } finally {
+                        prefetching.remove(key);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                prefetching.remove(key);
+                prefetchDropped.increment();
+            }
+        }
+    }
+
+    /**
+     * 取出异步结果，业务异常原样抛出
+     */
+    private static ComplianceListResult join(CompletableFuture<ComplianceListResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static ComplianceListResult withStatuses(ComplianceListResult result, Map<Long, Integer> statuses) {
+        if (result.items() == null) {
+            return result;
+        }
+        List<ComplianceItem> items = null;
+        for (int i = 0; i < result.items().size(); i++) {
+            ComplianceItem item = result.items().get(i);
+            Integer status = item.spuId() != null ? statuses.get(item.spuId()) : null;
+            if (status != null && !Objects.equals(item.processedStatus(), status)) {
+                if (items == null) {
+                    items = new ArrayList<>(result.items());
+                }
+                items.set(i, item.withProcessedStatus(status));
+            }
+        }
+        // 不包含这些商品时返回原实例，不替换条目
+        return items != null ? new ComplianceListResult(result.total(), items) : result;
+    }
+
+    private static int weigh(ComplianceListResult result) {
+        return 1 + (result.items() != null ? result.items().size() : 0);
+    }
+
+    private static Counter prefetchCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("temu.cache.prefetch").tag("cache", "compliance").tag("result", result).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+        prefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * 按(上游页码, 每页条数)异步请求一块违规商品，返回的结果需包含total和items
+     */
+    @FunctionalInterface
+    public interface BlockFetcher {
+        CompletableFuture<ComplianceListResult> fetch(int page, int pageSize);
+    }
+
+    private record Key(Integer userId, String mallid, Integer violationType, int block, int blockSize) {
+    }
+}
@@ -0,0 +1,106 @@
+package com.czx.utils;
+
+import com.czx.config.TemuCacheProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * 按用户缓存全部商品处理状态，首次查询某用户时整体加载，之后的查询不再访问数据库
+ * 状态写入时同步更新已加载的用户，加载与写入对同一用户互斥，保证不会被加载中的旧数据覆盖
+ * 所有用户合计的条目数超过上限时淘汰最久未访问的用户；单个用户超过上限时不缓存，由调用方按ID分批查询
+ */
+@Component
+public class ComplianceStatusCache {
+
+    private final TemuCacheProperties properties;
+    private final Map<Integer, UserStatuses> users = new ConcurrentHashMap<>();
+    private final AtomicLong totalEntries = new AtomicLong();
+
+    public ComplianceStatusCache(TemuCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        Gauge.builder("temu.cache.weight", totalEntries, AtomicLong::get).tag("cache", "compliance-status").register(meterRegistry);
+    }
+
+    /**
+     * 返回用户的全部处理状态，未加载或已过期时调用loader加载
+     * loader的参数是允许的最大条数，超出时返回null；返回null表示该用户不缓存
+     */
+    public LongIntMap get(Integer userId, LongFunction<LongIntMap> loader) {
+        if (properties.getStatusMaxEntries() <= 0) {
+            return null;
+        }
+        UserStatuses entry = users.computeIfAbsent(userId, key -> new UserStatuses());
+        long now = System.nanoTime();
+        entry.lastAccess = now;
+        LongIntMap statuses;
+        synchronized (entry) {
+            if (!entry.loaded || now - entry.loadedAt > TimeUnit.SECONDS.toNanos(properties.getStatusTtlSeconds())) {
+                LongIntMap loaded = loader.apply(properties.getStatusMaxEntries());
+                totalEntries.addAndGet((loaded != null ? loaded.size() : 0) - (entry.statuses != null ? entry.statuses.size() : 0));
+                entry.statuses = loaded;
+                entry.loaded = true;
+                entry.loadedAt = now;
+            }
+            statuses = entry.statuses;
+        }
+        evictIfNeeded(userId);
+        return statuses;
+    }
+
+    /**
+     * 状态写入数据库后调用，只更新已加载的用户
+     */
+    public void put(Integer userId, long productId, int status) {
+        UserStatuses entry = users.get(userId);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.statuses != null) {
+                totalEntries.addAndGet(entry.statuses.put(productId, status));
+            }
+        }
+    }
+
+    public void invalidate(Integer userId) {
+        UserStatuses entry = users.remove(userId);
+        if (entry != null) {
+            synchronized (entry) {
+                if (entry.statuses != null) {
+                    totalEntries.addAndGet(-entry.statuses.size());
+                }
+            }
+        }
+    }
+
+    private void evictIfNeeded(Integer current) {
+        while (totalEntries.get() > properties.getStatusMaxEntries()) {
+            Integer oldest = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<Integer, UserStatuses> entry : users.entrySet()) {
+                if (!entry.getKey().equals(current) && entry.getValue().lastAccess < oldestAccess) {
+                    oldest = entry.getKey();
+                    oldestAccess = entry.getValue().lastAccess;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            invalidate(oldest);
+        }
+    }
+
+    private static final class UserStatuses {
+        LongIntMap statuses;
+        boolean loaded;
+        long loadedAt;
+        volatile long lastAccess;
+    }
+}
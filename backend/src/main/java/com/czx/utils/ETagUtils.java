@@ -0,0 +1,71 @@
+package com.czx.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.List;
+
+/**
+ * ETag与条件请求工具类
+ * 列表接口按内容哈希生成弱ETag，请求头If-None-Match匹配时直接返回304，不再序列化和传输响应体
+ * POST查询接口同样按304处理（Spring自带的checkNotModified对POST返回412）
+ */
+public class ETagUtils {
+
+    /**
+     * 64位哈希转为弱ETag
+     */
+    public static String of(long hash) {
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+
+    /**
+     * 按元素hashCode合并的64位哈希，适用于上游返回的record列表
+     */
+    public static String of(List<?> items) {
+        long hash = 0x9e3779b97f4a7c15L;
+        for (Object item : items) {
+            hash = (hash ^ (item != null ? item.hashCode() : 0)) * 0xbf58476d1ce4e5b9L;
+            hash ^= hash >>> 31;
+        }
+        return of(hash ^ items.size());
+    }
+
+    /**
+     * 写入ETag响应头，并判断请求头If-None-Match是否匹配
+     * 匹配时已设置304状态码，调用方直接返回null即可
+     */
+    public static boolean checkNotModified(HttpServletRequest request, HttpServletResponse response, String etag) {
+        if (etag == null) {
+            return false;
+        }
+        response.setHeader("ETag", etag);
+        // 按用户返回不同内容，只允许浏览器缓存且每次都要校验
+        response.setHeader("Cache-Control", "private, no-cache");
+        response.setHeader("Vary", "token");
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch == null || !matches(ifNoneMatch, etag)) {
+            return false;
+        }
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * If-None-Match可能是逗号分隔的多个ETag或*，按弱比较忽略W/前缀
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || stripWeak(candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,95 @@
+package com.czx.utils;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 响应体解码工具类
+ * 根据Content-Encoding选择解码器，返回解压后的流，不在内存中保留完整的响应体
+ */
+public class HttpContentDecoder {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 按Content-Encoding包装解码流
+     * 多重编码（如 "gzip, br"）按相反顺序逐层解码；未声明编码时检测gzip文件头，兼容旧逻辑
+     */
+    public static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        if (contentEncoding == null || contentEncoding.isBlank()) {
+            return sniffGzip(body);
+        }
+
+        String[] encodings = contentEncoding.split(",");
+        InputStream decoded = body;
+        for (int i = encodings.length - 1; i >= 0; i--) {
+            decoded = decodeOne(decoded, encodings[i].trim().toLowerCase());
+        }
+        return decoded;
+    }
+
+    private static InputStream decodeOne(InputStream in, String encoding) throws IOException {
+        switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            case "deflate":
+                return inflate(in);
+            case "br":
+                return new BrotliInputStream(in);
+            case "zstd":
+                return new ZstdInputStream(in);
+            case "identity":
+            case "":
+                return in;
+            default:
+                throw new IOException("不支持的Content-Encoding: " + encoding);
+        }
+    }
+
+    /**
+     * deflate在实际中既有zlib包装格式也有裸deflate格式，根据首字节判断
+     */
+    private static InputStream inflate(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(1);
+        int first = buffered.read();
+        buffered.reset();
+        // zlib头的低4位为8（deflate算法）
+        boolean zlibWrapped = first != -1 && (first & 0x0f) == 0x08;
+        Inflater inflater = new Inflater(!zlibWrapped);
+        return new InflaterInputStream(buffered, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // 自定义Inflater不会被InflaterInputStream释放，需要手动释放本地内存
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * 检查是否是gzip压缩数据（gzip文件头是 0x1f 0x8b）
+     */
+    private static InputStream sniffGzip(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        buffered.reset();
+        if (b1 == 0x1f && b2 == 0x8b) {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        return buffered;
+    }
+}
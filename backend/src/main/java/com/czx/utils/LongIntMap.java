@@ -0,0 +1,100 @@
+package com.czx.utils;
+
+/**
+ * long到int的开放寻址哈希表，键值都用基本类型数组保存，没有装箱对象
+ * 百万条记录约占25MB，同样数据的HashMap<Long, Integer>需要80MB左右
+ * 方法都已同步，可以在多个线程间共享
+ */
+public class LongIntMap {
+
+    private static final float LOAD_FACTOR = 0.6f;
+    // 0作为空槽标记，键为0的条目单独保存
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * 返回键对应的值，不存在时返回defaultValue
+     */
+    public synchronized int get(long key, int defaultValue) {
+        if (key == EMPTY) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            if (keys[slot] == EMPTY) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * 写入键值，返回新增的条目数（0或1）
+     */
+    public synchronized int put(long key, int value) {
+        if (key == EMPTY) {
+            int added = hasZeroKey ? 0 : 1;
+            hasZeroKey = true;
+            zeroValue = value;
+            size += added;
+            return added;
+        }
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return 0;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                return 1;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        values = new int[oldKeys.length << 1];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // 商品ID是连续递增的，打散后再取低位，避免线性探测时聚集
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,31 +1,71 @@
 package com.czx.utils;
 
+import com.czx.pojo.temu.TemuResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.net.URIBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.net.URI;
 import java.util.Map;
 import java.util.Optional;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 @Slf4j
 @Component
 public class NetworkRequest {
     
-    private final RestTemplate restTemplate;
+    // 错误响应日志最多输出的字节数
+    private static final int ERROR_PREVIEW_BYTES = 500;
+    
+    private final CloseableHttpAsyncClient asyncHttpClient;
+    private final ExecutorService decodeExecutor;
+    private final UpstreamRateLimiter rateLimiter;
+    private final UpstreamResilience resilience;
+    private final UpstreamMetrics metrics;
+    private final UpstreamJournal journal;
     private final ObjectMapper objectMapper;
+    // 生成合并key用，Map按key排序后序列化，保证相同内容的payload得到相同字符串
+    private final ObjectMapper canonicalMapper;
+    private final ObjectReader treeReader;
+    // 按响应类型缓存的流式反序列化器
+    private final Map<Class<?>, ObjectReader> typedReaders = new ConcurrentHashMap<>();
+    // 只读接口的并发相同请求合并为一次上游调用；JsonNode可变需要复制，类型化响应是不可变record直接共享
+    private final SingleFlight<String, Object> singleFlight = new SingleFlight<>(
+            value -> value instanceof JsonNode ? ((JsonNode) value).deepCopy() : value);
     
-    public NetworkRequest(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public NetworkRequest(CloseableHttpAsyncClient asyncHttpClient,
+                          @Qualifier("upstreamDecodeExecutor") ExecutorService decodeExecutor,
+                          UpstreamRateLimiter rateLimiter, UpstreamResilience resilience,
+                          UpstreamMetrics metrics, UpstreamJournal journal) {
+        this.asyncHttpClient = asyncHttpClient;
+        this.decodeExecutor = decodeExecutor;
+        this.rateLimiter = rateLimiter;
+        this.resilience = resilience;
+        this.metrics = metrics;
+        this.journal = journal;
         this.objectMapper = new ObjectMapper();
+        this.canonicalMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        this.treeReader = objectMapper.readerFor(JsonNode.class);
     }
     
     /**
@@ -34,7 +74,7 @@ public class NetworkRequest {
     private HttpHeaders getHeaders(String cookie, String mallid, String origin) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("accept", "*/*");
-        // 移除accept-encoding，让服务器返回未压缩的响应
+        // 以下压缩格式均由HttpContentDecoder流式解码
         headers.set("accept-encoding", "gzip, deflate, br, zstd");
         headers.set("accept-language", "zh-CN,zh;q=0.9,en;q=0.8");
         headers.set("anti-content", "");
@@ -56,29 +96,207 @@ public class NetworkRequest {
     }
     
     /**
-     * 解压gzip数据
+     * 执行异步请求
+     * 每次尝试先按mallid获取限流许可，请求在NIO连接池上发出，不占用调用线程；响应到达后在解码线程池中按Content-Encoding流式解压并交给Jackson解析
+     * 尝试之外由UpstreamResilience负责熔断和只读接口的退避重试，每次重试重新构建请求
+     * 只读接口按(地址, 参数, mallid)合并并发的相同请求，共享一次上游调用的结果
+     * 与同步方法的错误语义一致：任何失败只记录日志，future以null完成，不会异常完成
      */
-    private String decompressGzip(byte[] compressedData) throws IOException {
-        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(compressedData))) {
-            return new String(gzipInputStream.readAllBytes());
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> executeAsync(String url, Supplier<SimpleHttpRequest> requestFactory, HttpHeaders headers,
+                                                  String mallid, String flightKey, ObjectReader reader) {
+        TemuEndpoint endpoint = TemuEndpoint.of(url);
+        if (!endpoint.isReadOnly()) {
+            return executeWithResilience(endpoint, requestFactory, headers, mallid, reader);
         }
+        return (CompletableFuture<T>) singleFlight.execute(flightKey + " " + reader.getValueType(),
+                () -> executeWithResilience(endpoint, requestFactory, headers, mallid, reader));
     }
-    
+
+    private <T> CompletableFuture<T> executeWithResilience(TemuEndpoint endpoint, Supplier<SimpleHttpRequest> requestFactory,
+                                                           HttpHeaders headers, String mallid, ObjectReader reader) {
+        return resilience.<T>execute(endpoint, mallid, () -> attempt(endpoint, requestFactory.get(), headers, mallid, reader))
+                .thenApply(UpstreamResponse::getBody)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    log.error("{}请求失败: {}", endpoint.getLogicalName(), cause.getMessage());
+                    return null;
+                });
+    }
+
     /**
-     * 处理响应体，自动检测并解压gzip数据
+     * 合并key：请求方法、地址、按key排序后的参数、mallid
      */
-    private String processResponseBody(byte[] responseBody) throws IOException {
-        if (responseBody == null || responseBody.length == 0) {
-            return null;
+    private String flightKey(String method, String url, Map<String, Object> payload, String mallid)
+            throws JsonProcessingException {
+        return method + " " + url + " " + canonicalMapper.writeValueAsString(payload) + " " + mallid;
+    }
+
+    /**
+     * 单次请求尝试：限流许可 -> 发送 -> 解码
+     * 耗时从拿到限流许可、发出请求开始计算，不含限流排队时间
+     */
+    private <T> CompletableFuture<UpstreamResponse<T>> attempt(TemuEndpoint endpoint, SimpleHttpRequest request,
+                                                               HttpHeaders headers, String mallid, ObjectReader reader) {
+        headers.forEach((name, values) -> {
+            // Content-Type由请求体设置
+            if (!HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) {
+                values.forEach(value -> request.addHeader(name, value));
+            }
+        });
+
+        return rateLimiter.acquire(mallid)
+                .thenCompose(permit -> {
+                    UpstreamJournal.Exchange exchange = journal.begin(endpoint, request.getMethod(), request.getRequestUri(),
+                            mallid, headers, request.getBodyBytes());
+                    long start = System.nanoTime();
+                    return send(request)
+                            .thenApplyAsync(response -> {
+                                T result = readResponse(endpoint, response, exchange, reader);
+                                UpstreamRateLimiter.Outcome outcome = outcomeOf(response.getCode(), result);
+                                permit.release(outcome);
+                                long nanos = System.nanoTime() - start;
+                                metrics.recordRequest(endpoint, mallid, metricOutcome(response.getCode(), result, outcome), nanos);
+                                finish(exchange, nanos);
+                                return new UpstreamResponse<>(response.getCode(), result,
+                                        outcome == UpstreamRateLimiter.Outcome.THROTTLED);
+                            }, decodeExecutor)
+                            .whenComplete((result, e) -> {
+                                if (e != null) {
+                                    permit.release(UpstreamRateLimiter.Outcome.IGNORED);
+                                    long nanos = System.nanoTime() - start;
+                                    metrics.recordRequest(endpoint, mallid, UpstreamMetrics.EXCEPTION, nanos);
+                                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                                    exchange.setError(cause.getClass().getSimpleName() + ": " + cause.getMessage());
+                                    finish(exchange, nanos);
+                                }
+                            });
+                });
+    }
+
+    /**
+     * 写入请求记录；失败的请求同时输出到错误日志
+     */
+    private void finish(UpstreamJournal.Exchange exchange, long nanos) {
+        exchange.setDurationMs(nanos / 1_000_000d);
+        journal.record(exchange);
+        if (exchange.isFailed()) {
+            log.error("上游请求失败: {}", exchange);
+        } else {
+            log.debug("上游请求完成: {} {} {}ms", exchange.getEndpoint(), exchange.getStatus(), exchange.getDurationMs());
         }
-        
-        // 检查是否是gzip压缩数据（gzip文件头是 0x1f 0x8b）
-        if (responseBody.length >= 2 && responseBody[0] == 0x1f && responseBody[1] == (byte) 0x8b) {
-            log.info("检测到gzip压缩数据，正在解压...");
-            return decompressGzip(responseBody);
+    }
+
+    private CompletableFuture<SimpleHttpResponse> send(SimpleHttpRequest request) {
+        CompletableFuture<SimpleHttpResponse> responseFuture = new CompletableFuture<>();
+        try {
+            asyncHttpClient.execute(request, new FutureCallback<>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    responseFuture.complete(response);
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    responseFuture.completeExceptionally(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    responseFuture.cancel(false);
+                }
+            });
+        } catch (Exception e) {
+            responseFuture.completeExceptionally(e);
+        }
+        return responseFuture;
+    }
+
+    /**
+     * 根据响应判断是否被上游限流：429、5xx，或业务返回success=false且消息为限流提示
+     */
+    private UpstreamRateLimiter.Outcome outcomeOf(int statusCode, Object result) {
+        if (statusCode == HttpStatus.TOO_MANY_REQUESTS.value() || statusCode >= 500) {
+            return UpstreamRateLimiter.Outcome.THROTTLED;
+        }
+        if (result == null) {
+            return UpstreamRateLimiter.Outcome.IGNORED;
+        }
+        Boolean success;
+        String errorMsg;
+        String msg;
+        if (result instanceof TemuResponse) {
+            TemuResponse<?> response = (TemuResponse<?>) result;
+            success = response.success();
+            errorMsg = response.errorMsg();
+            msg = response.msg();
         } else {
-            // 不是压缩数据，直接返回字符串
-            return new String(responseBody);
+            JsonNode node = (JsonNode) result;
+            success = JsonUtils.getBoolean(node, "success");
+            errorMsg = JsonUtils.getString(node, "errorMsg");
+            msg = JsonUtils.getString(node, "msg");
+        }
+        if (success != null && !success
+                && (rateLimiter.isThrottleMessage(errorMsg) || rateLimiter.isThrottleMessage(msg))) {
+            return UpstreamRateLimiter.Outcome.THROTTLED;
+        }
+        return UpstreamRateLimiter.Outcome.SUCCESS;
+    }
+
+    private String metricOutcome(int statusCode, Object result, UpstreamRateLimiter.Outcome outcome) {
+        if (outcome == UpstreamRateLimiter.Outcome.THROTTLED) {
+            return UpstreamMetrics.THROTTLED;
+        }
+        if (statusCode != HttpStatus.OK.value()) {
+            return UpstreamMetrics.HTTP_ERROR;
+        }
+        return result != null ? UpstreamMetrics.SUCCESS : UpstreamMetrics.INVALID_BODY;
+    }
+
+    /**
+     * 处理响应体
+     * 缓冲的是未解压的原始字节，解压后的内容以流的方式直接进入Jackson，不在内存中保留完整副本
+     * reader为类型化响应时直接反序列化为record，跳过未使用的字段，不构建JsonNode树
+     * 状态码、响应体前若干字节和错误原因写入请求记录
+     */
+    private <T> T readResponse(TemuEndpoint endpoint, SimpleHttpResponse response, UpstreamJournal.Exchange exchange,
+                               ObjectReader reader) {
+        exchange.setStatus(response.getCode());
+        byte[] rawBody = response.getBodyBytes();
+        exchange.setResponseBytes(rawBody != null ? rawBody.length : 0);
+        if (rawBody == null || rawBody.length == 0) {
+            exchange.setError("响应体为空");
+            return null;
+        }
+
+        Header contentEncodingHeader = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        String contentEncoding = contentEncodingHeader != null ? contentEncodingHeader.getValue() : null;
+        exchange.setContentEncoding(contentEncoding);
+        long decodeStart = System.nanoTime();
+        try (UpstreamJournal.PreviewInputStream body = journal.capture(
+                HttpContentDecoder.decode(new ByteArrayInputStream(rawBody), contentEncoding))) {
+            // 错误响应只读取前若干字节用于排查
+            if (response.getCode() != HttpStatus.OK.value()) {
+                body.readNBytes(ERROR_PREVIEW_BYTES);
+                exchange.setResponsePreview(body.preview());
+                exchange.setError("HTTP错误: " + response.getCode());
+                return null;
+            }
+
+            T result = reader.readValue(body);
+            metrics.recordDecode(endpoint, contentEncoding, rawBody.length, System.nanoTime() - decodeStart);
+            exchange.setResponsePreview(body.preview());
+            if (result == null || result instanceof JsonNode && ((JsonNode) result).isMissingNode()) {
+                exchange.setError("响应体为空");
+                return null;
+            }
+            return result;
+        } catch (JsonProcessingException e) {
+            exchange.setError("JSON解析错误: " + e.getOriginalMessage());
+            return null;
+        } catch (IOException e) {
+            exchange.setError("响应解码失败: " + e.getMessage());
+            return null;
         }
     }
     
@@ -88,165 +306,93 @@ public class NetworkRequest {
      */
     public Optional<JsonNode> post(String url, Map<String, Object> data, 
                                   String cookie, String mallid, String origin) {
+        return Optional.ofNullable(postAsync(url, data, cookie, mallid, origin).join());
+    }
+    
+    /**
+     * 发送GET请求
+     * 返回类型改为Optional<JsonNode>，与Python版本保持一致
+     */
+    public Optional<JsonNode> get(String url, Map<String, Object> params,
+                                 String cookie, String mallid, String origin) {
+        return Optional.ofNullable(getAsync(url, params, cookie, mallid, origin).join());
+    }
+    
+    /**
+     * 发送POST请求，响应直接反序列化为类型化的record
+     */
+    public <R> Optional<TemuResponse<R>> post(String url, Map<String, Object> data,
+                                             String cookie, String mallid, String origin, Class<R> resultType) {
+        return Optional.ofNullable(postAsync(url, data, cookie, mallid, origin, resultType).join());
+    }
+    
+    /**
+     * 异步发送POST请求
+     * 请求失败时future以null完成，对应同步方法的Optional.empty()
+     */
+    public CompletableFuture<JsonNode> postAsync(String url, Map<String, Object> data,
+                                                 String cookie, String mallid, String origin) {
+        return postAsync(url, data, cookie, mallid, origin, treeReader);
+    }
+    
+    /**
+     * 异步发送POST请求，响应流式反序列化为TemuResponse<R>，未使用的字段直接跳过
+     * 请求失败时future以null完成
+     */
+    public <R> CompletableFuture<TemuResponse<R>> postAsync(String url, Map<String, Object> data,
+                                                            String cookie, String mallid, String origin, Class<R> resultType) {
+        return postAsync(url, data, cookie, mallid, origin, typedReader(resultType));
+    }
+    
+    private ObjectReader typedReader(Class<?> resultType) {
+        return typedReaders.computeIfAbsent(resultType, type -> objectMapper.readerFor(
+                objectMapper.getTypeFactory().constructParametricType(TemuResponse.class, type)));
+    }
+    
+    private <T> CompletableFuture<T> postAsync(String url, Map<String, Object> data,
+                                               String cookie, String mallid, String origin, ObjectReader reader) {
         try {
             HttpHeaders headers = getHeaders(cookie, mallid, origin);
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(data, headers);
             
-            // 调试信息
-            log.info("请求头: {}", headers);
-            log.info("发送POST请求到: {}", url);
-            log.info("请求数据: {}", data);
+            // 调试信息，完整的请求记录见 /actuator/upstreamjournal
+            log.debug("发送POST请求到: {}", url);
             
-            ResponseEntity<byte[]> response = restTemplate.postForEntity(url, request, byte[].class);
-            
-            // 详细的错误处理
-            if (response.getStatusCode() != HttpStatus.OK) {
-                log.error("HTTP错误: {}", response.getStatusCode());
-                log.error("响应内容: {}...", 
-                    response.getBody() != null ? 
-                    new String(response.getBody()).substring(0, Math.min(500, response.getBody().length)) : "null");
-                
-                // 尝试解析错误响应
-                try {
-                    if (response.getBody() != null) {
-                        String responseText = processResponseBody(response.getBody());
-                        if (responseText != null) {
-                            JsonNode errorData = objectMapper.readTree(responseText);
-                            log.error("错误详情: {}", errorData);
-                        }
-                    }
-                } catch (Exception e) {
-                    log.error("无法解析错误响应为JSON");
-                }
-                
-                return Optional.empty();
-            }
-            
-            // 处理响应体
-            if (response.getBody() != null) {
-                try {
-                    String responseText = processResponseBody(response.getBody());
-                    if (responseText != null) {
-                        JsonNode result = objectMapper.readTree(responseText);
-                        log.info("请求成功");
-                        return Optional.of(result);
-                    } else {
-                        log.error("响应体处理失败");
-                        return Optional.empty();
-                    }
-                } catch (Exception e) {
-                    log.error("JSON解析错误: {}", e.getMessage());
-                    if (response.getBody() != null) {
-                        log.error("响应内容: {}...", 
-                            new String(response.getBody()).substring(0, Math.min(500, response.getBody().length)));
-                    }
-                    return Optional.empty();
-                }
-            } else {
-                log.error("响应体为空");
-                return Optional.empty();
-            }
+            byte[] body = objectMapper.writeValueAsBytes(data);
+            return executeAsync(url, () -> SimpleRequestBuilder.post(url)
+                    .setBody(body, ContentType.APPLICATION_JSON)
+                    .build(), headers, mallid, flightKey("POST", url, data, mallid), reader);
             
         } catch (Exception e) {
             log.error("POST请求失败: {}", e.getMessage());
-            return Optional.empty();
+            return CompletableFuture.completedFuture(null);
         }
     }
     
     /**
-     * 发送GET请求
-     * 返回类型改为Optional<JsonNode>，与Python版本保持一致
+     * 异步发送GET请求
+     * 请求失败时future以null完成，对应同步方法的Optional.empty()
      */
-    public Optional<JsonNode> get(String url, Map<String, Object> params,
-                                 String cookie, String mallid, String origin) {
+    public CompletableFuture<JsonNode> getAsync(String url, Map<String, Object> params,
+                                                String cookie, String mallid, String origin) {
         try {
             HttpHeaders headers = getHeaders(cookie, mallid, origin);
-            HttpEntity<Void> request = new HttpEntity<>(headers);
             
             // 构建查询参数
-            StringBuilder urlBuilder = new StringBuilder(url);
-            if (params != null && !params.isEmpty()) {
-                urlBuilder.append("?");
-                params.forEach((key, value) -> 
-                    urlBuilder.append(key).append("=").append(value).append("&"));
-                urlBuilder.setLength(urlBuilder.length() - 1); // 移除最后的&
+            URIBuilder uriBuilder = new URIBuilder(url);
+            if (params != null) {
+                params.forEach((key, value) -> uriBuilder.addParameter(key, String.valueOf(value)));
             }
+            URI finalUri = uriBuilder.build();
             
-            String finalUrl = urlBuilder.toString();
+            // 调试信息，完整的请求记录见 /actuator/upstreamjournal
+            log.debug("发送GET请求到: {}", finalUri);
             
-            // 调试信息
-            log.info("请求头: {}", headers);
-            log.info("发送GET请求到: {}", finalUrl);
-            log.info("请求参数: {}", params);
-            
-            ResponseEntity<byte[]> response = restTemplate.exchange(finalUrl, HttpMethod.GET, request, byte[].class);
-            
-            // 详细的错误处理
-            if (response.getStatusCode() != HttpStatus.OK) {
-                log.error("HTTP错误: {}", response.getStatusCode());
-                log.error("响应内容: {}...", 
-                    response.getBody() != null ? 
-                    new String(response.getBody()).substring(0, Math.min(500, response.getBody().length)) : "null");
-                return Optional.empty();
-            }
-            
-            // 处理响应体
-            if (response.getBody() != null) {
-                try {
-                    String responseText = processResponseBody(response.getBody());
-                    if (responseText != null) {
-                        JsonNode result = objectMapper.readTree(responseText);
-                        log.info("请求成功");
-                        return Optional.of(result);
-                    } else {
-                        log.error("响应体处理失败");
-                        return Optional.empty();
-                    }
-                } catch (Exception e) {
-                    log.error("JSON解析错误: {}", e.getMessage());
-                    if (response.getBody() != null) {
-                        log.error("响应内容: {}...", 
-                            new String(response.getBody()).substring(0, Math.min(500, response.getBody().length)));
-                    }
-                    return Optional.empty();
-                }
-            } else {
-                log.error("响应体为空");
-                return Optional.empty();
-            }
+            return executeAsync(url, () -> SimpleRequestBuilder.get(finalUri).build(), headers, mallid,
+                    flightKey("GET", url, params, mallid), treeReader);
             
         } catch (Exception e) {
             log.error("GET请求失败: {}", e.getMessage());
-            return Optional.empty();
-        }
-    }
-    
-    /**
-     * 为了向后兼容，保留原有的方法
-     * 但标记为已废弃
-     */
-    @Deprecated
-    public ResponseEntity<String> postLegacy(String url, Map<String, Object> data, 
-                                           String cookie, String mallid, String origin) {
-        HttpHeaders headers = getHeaders(cookie, mallid, origin);
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(data, headers);
-        return restTemplate.postForEntity(url, request, String.class);
-    }
-    
-    @Deprecated
-    public ResponseEntity<String> getLegacy(String url, Map<String, Object> params,
-                                          String cookie, String mallid, String origin) {
-        HttpHeaders headers = getHeaders(cookie, mallid, origin);
-        HttpEntity<Void> request = new HttpEntity<>(headers);
-        
-        StringBuilder urlBuilder = new StringBuilder(url);
-        if (params != null && !params.isEmpty()) {
-            urlBuilder.append("?");
-            params.forEach((key, value) -> 
-                urlBuilder.append(key).append("=").append(value).append("&"));
-            urlBuilder.setLength(urlBuilder.length() - 1);
+            return CompletableFuture.completedFuture(null);
         }
-        
-        return restTemplate.exchange(urlBuilder.toString(), HttpMethod.GET, request, String.class);
     }
 }
@@ -0,0 +1,183 @@
+package com.czx.utils;
+
+import com.czx.config.TemuOfflineProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 全局共用的批量下架执行器
+ * 线程池大小固定为全局并发上限，线程数不随请求量增长；每个用户一条队列，同时交给线程池的任务不超过用户上限，
+ * 单个批次还受请求中max_threads的限制，避免一个用户的大批量占满全部线程
+ * 排队中的任务总数超过上限时拒绝新的批次
+ * 异步任务在线程上只负责发起，返回的future完成后才释放用户和批次的并发
+ *
+ * 指标：temu.offline.queued 排队中的任务数，temu.offline.active 执行中的任务数，temu.offline.wait 任务从提交到开始执行的等待时间
+ */
+@Component
+public class OfflineExecutor {
+
+    private final TemuOfflineProperties properties;
+    private final ThreadPoolExecutor pool;
+    private final Map<Integer, UserLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Timer waitTimer;
+
+    public OfflineExecutor(TemuOfflineProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.pool = new ThreadPoolExecutor(properties.getMaxConcurrency(), properties.getMaxConcurrency(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new CustomizableThreadFactory("offline-"));
+        // 空闲时线程全部回收
+        this.pool.allowCoreThreadTimeOut(true);
+        this.waitTimer = Timer.builder("temu.offline.wait").register(meterRegistry);
+        Gauge.builder("temu.offline.queued", queued, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("temu.offline.active", pool, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    /**
+     * 提交一个批次，返回与tasks一一对应的结果；maxParallel为该批次的并发上限
+     * 排队已满时抛出RejectedExecutionException
+     */
+    public <T> List<CompletableFuture<T>> submitAll(Integer userId, int maxParallel, List<Supplier<T>> tasks) {
+        List<Supplier<CompletableFuture<T>>> asyncTasks = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks) {
+            asyncTasks.add(() -> CompletableFuture.completedFuture(task.get()));
+        }
+        return submitAllAsync(userId, maxParallel, asyncTasks);
+    }
+
+    /**
+     * 提交一个批次的异步任务，任务返回的future完成前一直占用并发
+     */
+    public <T> List<CompletableFuture<T>> submitAllAsync(Integer userId, int maxParallel, List<Supplier<CompletableFuture<T>>> tasks) {
+        if (queued.addAndGet(tasks.size()) > properties.getMaxQueuedTasks()) {
+            queued.addAndGet(-tasks.size());
+            throw new RejectedExecutionException("下架任务排队已满，请稍后再试");
+        }
+        Batch batch = new Batch(parallelism(maxParallel));
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        long now = System.nanoTime();
+        for (Supplier<CompletableFuture<T>> task : tasks) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            futures.add(future);
+            batch.tasks.add(new Task(now, () -> {
+                CompletableFuture<T> done;
+                try {
+                    done = task.get();
+                } catch (Throwable e) {
+                    done = CompletableFuture.failedFuture(e);
+                }
+                return done.whenComplete((value, e) -> {
+                    if (e != null) {
+                        future.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    } else {
+                        future.complete(value);
+                    }
+                });
+            }));
+        }
+        while (true) {
+            UserLane lane = lanes.computeIfAbsent(userId, key -> new UserLane());
+            synchronized (lane) {
+                // 刚被移除的队列不再使用，重新取一次
+                if (lane.removed) {
+                    continue;
+                }
+                lane.batches.add(batch);
+            }
+            dispatch(userId, lane);
+            break;
+        }
+        return futures;
+    }
+
+    /**
+     * 单个批次实际的并发数
+     */
+    public int parallelism(int maxParallel) {
+        return Math.max(1, Math.min(maxParallel, properties.getPerUserConcurrency()));
+    }
+
+    /**
+     * 在用户和批次上限内把排队的任务交给线程池，批次按提交顺序
+     */
+    private void dispatch(Integer userId, UserLane lane) {
+        List<Runnable> ready = new ArrayList<>();
+        synchronized (lane) {
+            Iterator<Batch> batches = lane.batches.iterator();
+            while (batches.hasNext() && lane.active < properties.getPerUserConcurrency()) {
+                Batch batch = batches.next();
+                while (!batch.tasks.isEmpty() && batch.active < batch.maxParallel
+                        && lane.active < properties.getPerUserConcurrency()) {
+                    Task task = batch.tasks.poll();
+                    batch.active++;
+                    lane.active++;
+                    ready.add(() -> run(userId, lane, batch, task));
+                }
+                if (batch.tasks.isEmpty()) {
+                    batches.remove();
+                }
+            }
+            if (lane.active == 0 && lane.batches.isEmpty()) {
+                lane.removed = true;
+                lanes.remove(userId, lane);
+            }
+        }
+        ready.forEach(pool::execute);
+    }
+
+    private void run(Integer userId, UserLane lane, Batch batch, Task task) {
+        queued.decrementAndGet();
+        waitTimer.record(System.nanoTime() - task.submittedAt, TimeUnit.NANOSECONDS);
+        task.body.get().whenComplete((value, e) -> {
+            synchronized (lane) {
+                batch.active--;
+                lane.active--;
+            }
+            dispatch(userId, lane);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static final class UserLane {
+        final Deque<Batch> batches = new ArrayDeque<>();
+        int active;
+        boolean removed;
+    }
+
+    private static final class Batch {
+        final int maxParallel;
+        final Deque<Task> tasks = new ArrayDeque<>();
+        int active;
+
+        Batch(int maxParallel) {
+            this.maxParallel = maxParallel;
+        }
+    }
+
+    private record Task(long submittedAt, Supplier<CompletableFuture<?>> body) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.czx.utils;
+
+import com.czx.config.TemuOfflineProperties;
+import com.czx.mapper.OfflineJobMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步下架任务的租约，多个实例共用offline_job表时只中断执行实例已停止的任务
+ * 任务提交时记下本实例ID；本实例每隔jobHeartbeatIntervalMs为执行中的任务续约，
+ * 同时把超过jobLeaseSeconds未续约的未结束任务标记为失败，未执行的商品标记为已取消
+ * 续约和过期判断都使用数据库时间，不受各实例时钟偏差影响
+ */
+@Component
+public class OfflineJobLease {
+
+    private static final Logger log = LoggerFactory.getLogger(OfflineJobLease.class);
+    private static final String INTERRUPTED = "执行实例已停止，任务中断";
+    // 单条续约语句的最大任务数
+    private static final int MAX_RENEW_IDS = 500;
+
+    private final OfflineJobMapper offlineJobMapper;
+    private final TemuOfflineProperties properties;
+    // 本实例ID：进程名（pid@主机名）加随机后缀，同一主机重启后也不重复
+    private final String owner;
+    // 本实例执行中的任务
+    private final Set<Long> held = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    public OfflineJobLease(OfflineJobMapper offlineJobMapper, TemuOfflineProperties properties) {
+        this.offlineJobMapper = offlineJobMapper;
+        this.properties = properties;
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        if (name.length() > 50) {
+            name = name.substring(0, 50);
+        }
+        this.owner = name + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * 启动后立即检查一次，之后定时续约和检查
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("offline-lease-"));
+        long interval = Math.max(1, properties.getJobHeartbeatIntervalMs());
+        scheduler.scheduleWithFixedDelay(this::tick, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public String owner() {
+        return owner;
+    }
+
+    /**
+     * 本实例开始执行任务，此后定时续约
+     */
+    public void hold(Long jobId) {
+        held.add(jobId);
+    }
+
+    public void release(Long jobId) {
+        held.remove(jobId);
+    }
+
+    private void tick() {
+        try {
+            renew();
+        } catch (Exception e) {
+            log.warn("批量下架任务续约失败: {}", e.getMessage());
+        }
+        try {
+            failExpired();
+        } catch (Exception e) {
+            log.warn("检查中断的批量下架任务失败: {}", e.getMessage());
+        }
+    }
+
+    private void renew() {
+        List<Long> ids = new ArrayList<>(held);
+        for (int from = 0; from < ids.size(); from += MAX_RENEW_IDS) {
+            offlineJobMapper.renewLease(owner, ids.subList(from, Math.min(ids.size(), from + MAX_RENEW_IDS)));
+        }
+    }
+
+    private void failExpired() {
+        long leaseSeconds = properties.getJobLeaseSeconds();
+        for (Long jobId : offlineJobMapper.findExpiredIds(leaseSeconds)) {
+            // 本实例的任务只会因续约失败而过期，仍在执行，不中断
+            if (held.contains(jobId)) {
+                continue;
+            }
+            // 条件更新，查询之后刚续约的任务不会被结束
+            if (offlineJobMapper.failExpired(jobId, leaseSeconds, INTERRUPTED) > 0) {
+                offlineJobMapper.cancelPendingItems(jobId);
+                log.warn("批量下架任务{}的执行实例已停止，标记为失败", jobId);
+            }
+        }
+    }
+}
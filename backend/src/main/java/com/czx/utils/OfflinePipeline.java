@@ -0,0 +1,186 @@
+package com.czx.utils;
+
+import com.czx.config.TemuOfflineProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个商品下架的分阶段流水线：查询商品信息 -> 预检查 -> 发送下架消息 -> 等待下架结果
+ * 每个阶段有独立的并发数（同时执行的步骤数）和有界队列；步骤都是异步的上游请求，等待期间不占用线程
+ * 下一阶段的队列已满时，商品停在当前阶段并继续占用当前阶段的并发，压力逐级向前传递，直到提交方
+ *
+ * 指标：temu.offline.stage.active 各阶段执行中的商品数，temu.offline.stage.queued 各阶段排队的商品数（含被下一阶段挡住的），
+ * temu.offline.stage.time 各阶段单个步骤的耗时，其计数即该阶段的吞吐
+ */
+@Component
+public class OfflinePipeline {
+
+    public static final String INFO = "info";
+    public static final String PRECHECK = "precheck";
+    public static final String SEND = "send";
+    public static final String CONFIRM = "confirm";
+
+    // 启动步骤的线程数，步骤本身只发起异步请求，不在这里等待
+    private static final int DISPATCH_THREADS = 2;
+
+    private final List<Stage> stages;
+    private final ExecutorService dispatcher;
+
+    public OfflinePipeline(TemuOfflineProperties properties, MeterRegistry meterRegistry) {
+        int capacity = properties.getStageQueueCapacity();
+        this.stages = List.of(
+                new Stage(INFO, properties.getInfoWorkers(), capacity, meterRegistry),
+                new Stage(PRECHECK, properties.getPrecheckWorkers(), capacity, meterRegistry),
+                new Stage(SEND, properties.getSendWorkers(), capacity, meterRegistry),
+                new Stage(CONFIRM, properties.getConfirmWorkers(), capacity, meterRegistry));
+        this.dispatcher = Executors.newFixedThreadPool(DISPATCH_THREADS, new CustomizableThreadFactory("offline-stage-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * 流水线中的一步，返回false表示该商品到此结束，跳过后续阶段
+     */
+    @FunctionalInterface
+    public interface Step<C> {
+        CompletableFuture<Boolean> apply(C context);
+    }
+
+    /**
+     * 让一个商品依次经过各阶段，steps与阶段一一对应
+     * 全部阶段完成或某一步返回false时以context完成；步骤异常时以该异常完成
+     */
+    public <C> CompletableFuture<C> run(C context, List<Step<C>> steps) {
+        if (steps.size() != stages.size()) {
+            throw new IllegalArgumentException("流水线需要" + stages.size() + "个步骤");
+        }
+        CompletableFuture<C> result = new CompletableFuture<>();
+        enter(0, null, context, steps, result);
+        return result;
+    }
+
+    private <C> void enter(int index, Stage from, C context, List<Step<C>> steps, CompletableFuture<C> result) {
+        stages.get(index).offer(new Item(from, () -> execute(index, context, steps, result)));
+    }
+
+    private <C> void execute(int index, C context, List<Step<C>> steps, CompletableFuture<C> result) {
+        Stage stage = stages.get(index);
+        long started = System.nanoTime();
+        CompletableFuture<Boolean> step;
+        try {
+            step = steps.get(index).apply(context);
+        } catch (Throwable e) {
+            step = CompletableFuture.failedFuture(e);
+        }
+        step.whenComplete((proceed, e) -> {
+            stage.timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            if (e != null) {
+                stage.release();
+                result.completeExceptionally(e);
+            } else if (!Boolean.TRUE.equals(proceed) || index == stages.size() - 1) {
+                stage.release();
+                result.complete(context);
+            } else {
+                // 下一阶段接收后才释放当前阶段的并发
+                enter(index + 1, stage, context, steps, result);
+            }
+        });
+    }
+
+    /**
+     * 等待进入某阶段的商品；from为它所在的上一阶段，被接收（开始执行或进入队列）时释放上一阶段的并发
+     */
+    private record Item(Stage from, Runnable body) {
+    }
+
+    private final class Stage {
+        final int workers;
+        final int capacity;
+        final Timer timer;
+        // 等待执行的商品
+        private final Deque<Item> queue = new ArrayDeque<>();
+        // 队列已满，仍占着上一阶段并发的商品
+        private final Deque<Item> blocked = new ArrayDeque<>();
+        private int active;
+
+        Stage(String name, int workers, int capacity, MeterRegistry meterRegistry) {
+            this.workers = Math.max(1, workers);
+            this.capacity = Math.max(0, capacity);
+            this.timer = Timer.builder("temu.offline.stage.time").tag("stage", name).register(meterRegistry);
+            Gauge.builder("temu.offline.stage.active", this, Stage::activeCount).tag("stage", name).register(meterRegistry);
+            Gauge.builder("temu.offline.stage.queued", this, Stage::queuedCount).tag("stage", name).register(meterRegistry);
+        }
+
+        void offer(Item item) {
+            boolean start = false;
+            boolean accepted = true;
+            synchronized (this) {
+                if (active < workers) {
+                    active++;
+                    start = true;
+                } else if (queue.size() < capacity) {
+                    queue.add(item);
+                } else {
+                    blocked.add(item);
+                    accepted = false;
+                }
+            }
+            if (accepted && item.from != null) {
+                item.from.release();
+            }
+            if (start) {
+                dispatcher.execute(item.body);
+            }
+        }
+
+        /**
+         * 释放一个并发：启动队首的商品，并把一个被挡住的商品接进队列
+         */
+        void release() {
+            Item next;
+            Item admitted = null;
+            synchronized (this) {
+                next = queue.poll();
+                if (next == null) {
+                    next = blocked.poll();
+                    admitted = next;
+                } else if (!blocked.isEmpty()) {
+                    admitted = blocked.poll();
+                    queue.add(admitted);
+                }
+                if (next == null) {
+                    active--;
+                }
+            }
+            if (admitted != null && admitted.from != null) {
+                admitted.from.release();
+            }
+            if (next != null) {
+                dispatcher.execute(next.body);
+            }
+        }
+
+        synchronized int activeCount() {
+            return active;
+        }
+
+        synchronized int queuedCount() {
+            return queue.size() + blocked.size();
+        }
+    }
+}
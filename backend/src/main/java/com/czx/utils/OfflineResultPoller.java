@@ -0,0 +1,426 @@
+package com.czx.utils;
+
+import com.czx.config.TemuHttpProperties;
+import com.czx.config.TemuOfflineProperties;
+import com.czx.pojo.temu.ChatMessage;
+import com.czx.pojo.temu.MessageListResult;
+import com.czx.pojo.temu.TemuResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按会话共用的下架结果轮询
+ * 同一(店铺, parentMsgId)会话只有一个轮询：每隔resultPollIntervalMs从上次解析到的最后一条消息（游标）继续向后翻页，
+ * 首次从最早的下架消息开始；一页取满时立即查询下一页，单次翻页达到上限时剩余的下次从游标继续，不会因回复过多而漏掉结果
+ * 回复的消息ID在发送时分配、稍后才可见，游标可能已越过它；因此每次另从前几次轮询向后查询的起点（不早于最早仍在等待的下架消息）
+ * 回看有限的几页，补上晚到的回复。某个商品一直没有回复也不会让查询停在它的下架消息上
+ * 每条客服回复只解析一次，按其中的SKC ID完成对应的等待；回复早于等待登记到达时暂存，登记时直接取用；会话没有等待时停止轮询并移除
+ *
+ * 指标：temu.offline.poll.requests 查询消息的次数，temu.offline.poll.waiting 等待结果的商品数，
+ * temu.offline.poll.results{result=matched|timeout} 等待的结果
+ */
+@Component
+public class OfflineResultPoller {
+
+    private static final Logger log = LoggerFactory.getLogger(OfflineResultPoller.class);
+    private static final String QUERY_PATH = "/bg/cute/api/merchantService/chat/queryMessage";
+    // 每次查询的消息条数
+    private static final int PAGE_LIMIT = 20;
+    // 单次轮询最多连续翻页数，剩余的下次从游标继续
+    private static final int MAX_PAGES_PER_TICK = 10;
+    // 回看前几次轮询向后查询过的范围；回看最多的页数
+    private static final int LOOKBACK_TICKS = 2;
+    private static final int MAX_LOOKBACK_PAGES = 5;
+    // 每个会话记住的已解析消息数和暂存的回复数
+    private static final int MAX_REMEMBERED = 2048;
+    // 回复中的商品ID，兼容全角和半角冒号
+    private static final Pattern SKC_ID = Pattern.compile("SKC ID[：:]\\s*(\\d+)");
+
+    private final NetworkRequest networkRequest;
+    private final TemuHttpProperties httpProperties;
+    private final TemuOfflineProperties properties;
+    private final ScheduledExecutorService scheduler;
+    private final Map<SessionKey, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter requests;
+    private final Counter matched;
+    private final Counter timeouts;
+
+    public OfflineResultPoller(NetworkRequest networkRequest, TemuHttpProperties httpProperties,
+                               TemuOfflineProperties properties, MeterRegistry meterRegistry) {
+        this.networkRequest = networkRequest;
+        this.httpProperties = httpProperties;
+        this.properties = properties;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("offline-poll-"));
+        this.requests = Counter.builder("temu.offline.poll.requests").register(meterRegistry);
+        this.matched = Counter.builder("temu.offline.poll.results").tag("result", "matched").register(meterRegistry);
+        this.timeouts = Counter.builder("temu.offline.poll.results").tag("result", "timeout").register(meterRegistry);
+        Gauge.builder("temu.offline.poll.waiting", waiting, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        sessions.values().forEach(session -> session.close().forEach(waiter -> waiter.complete(null)));
+    }
+
+    /**
+     * 等待某个商品的下架回复，anchorMsgId为发送该商品的消息ID，只接受其后的回复
+     * 超过resultTimeoutMs仍无回复时以reply为null的结果完成
+     */
+    public CompletableFuture<WaitResult> await(String mallid, String parentMsgId, String cookie, String originUrl,
+                                           String anchorMsgId, Long skcId) {
+        if (anchorMsgId == null) {
+            return CompletableFuture.completedFuture(new WaitResult(null, 0));
+        }
+        Waiter waiter = new Waiter(skcId, anchorMsgId, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getResultTimeoutMs()));
+        SessionKey key = new SessionKey(mallid, parentMsgId);
+        while (true) {
+            Session session = sessions.computeIfAbsent(key, k -> new Session(k, cookie, originUrl));
+            Registration registration = session.register(waiter);
+            if (registration == null) {
+                // 会话刚被移除，重新创建
+                continue;
+            }
+            if (registration.replaced != null) {
+                // 同一商品重复下架，只等待最新的一次
+                waiting.decrementAndGet();
+                registration.replaced.complete(null);
+            }
+            if (registration.reply != null) {
+                matched.increment();
+                waiter.complete(registration.reply);
+            } else {
+                waiting.incrementAndGet();
+                if (registration.start) {
+                    schedule(session);
+                }
+            }
+            return waiter.future;
+        }
+    }
+
+    private void schedule(Session session) {
+        try {
+            scheduler.schedule(() -> tick(session), properties.getResultPollIntervalMs(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 应用关闭中
+            session.close().forEach(waiter -> waiter.complete(null));
+        }
+    }
+
+    private void tick(Session session) {
+        Window window = session.expireAndStart(System.nanoTime(), this::timedOut);
+        if (window == null) {
+            sessions.remove(session.key, session);
+            return;
+        }
+        fetch(session, window.from, MAX_PAGES_PER_TICK, true, () -> {
+            if (window.lookbackFrom != null && session.hasWaiters()) {
+                fetch(session, window.lookbackFrom, MAX_LOOKBACK_PAGES, false, () -> schedule(session));
+            } else {
+                schedule(session);
+            }
+        });
+    }
+
+    /**
+     * 从afterMsgId向后翻页，最多pages页，结束后执行next；forward为true时推进游标，否则为回看，读到游标处停止
+     * 查询失败时直接等待下次轮询
+     */
+    private void fetch(Session session, String afterMsgId, int pages, boolean forward, Runnable next) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("msgId", afterMsgId);
+        payload.put("direction", 2);
+        payload.put("limit", PAGE_LIMIT);
+        requests.increment();
+        CompletableFuture<TemuResponse<MessageListResult>> response;
+        try {
+            response = networkRequest.postAsync(httpProperties.getBaseUrl() + QUERY_PATH, payload,
+                    session.cookie, session.key.mallid, session.originUrl, MessageListResult.class);
+        } catch (Exception e) {
+            log.warn("查询下架结果失败: {}", e.getMessage());
+            schedule(session);
+            return;
+        }
+        response.whenComplete((result, e) -> {
+            try {
+                if (result == null || !result.succeeded() || result.result() == null) {
+                    schedule(session);
+                    return;
+                }
+                List<ChatMessage> messages = result.result().messageList();
+                for (Waiter waiter : session.dispatch(messages)) {
+                    matched.increment();
+                    waiting.decrementAndGet();
+                    waiter.complete(waiter.reply);
+                }
+                String last = messages.isEmpty() ? null : messages.get(messages.size() - 1).msgId();
+                boolean more = messages.size() >= PAGE_LIMIT && last != null && pages > 1 && session.hasWaiters();
+                if (forward) {
+                    session.advance(last);
+                } else if (more) {
+                    more = session.behindCursor(last);
+                }
+                if (more) {
+                    // 一页取满，继续向后翻页
+                    fetch(session, last, pages - 1, forward, next);
+                } else {
+                    next.run();
+                }
+            } catch (Exception ex) {
+                log.warn("解析下架结果失败: {}", ex.getMessage());
+                schedule(session);
+            }
+        });
+    }
+
+    private void timedOut(Waiter waiter) {
+        timeouts.increment();
+        waiting.decrementAndGet();
+        waiter.complete(null);
+    }
+
+    /**
+     * 比较两个消息ID的先后，数字ID按数值比较；无法比较时返回0
+     */
+    static int compareMsgId(String a, String b) {
+        if (a == null || b == null) {
+            return 0;
+        }
+        try {
+            return Long.compare(Long.parseLong(a), Long.parseLong(b));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 等待的结果：reply为客服回复，超时或被取代时为null；polls为等待期间经历的轮询次数
+     */
+    public record WaitResult(String reply, int polls) {
+    }
+
+    private record SessionKey(String mallid, String parentMsgId) {
+    }
+
+    /**
+     * 一次轮询的查询范围：from为向后查询的起点，lookbackFrom为回看的起点，无需回看时为null
+     */
+    private record Window(String from, String lookbackFrom) {
+    }
+
+    private record Registration(boolean start, String reply, Waiter replaced) {
+    }
+
+    private static final class Waiter {
+        final Long skcId;
+        final String anchorMsgId;
+        final long deadline;
+        final CompletableFuture<WaitResult> future = new CompletableFuture<>();
+        String reply;
+        // 已经历的轮询次数，在会话锁内修改
+        volatile int polls;
+
+        Waiter(Long skcId, String anchorMsgId, long deadline) {
+            this.skcId = skcId;
+            this.anchorMsgId = anchorMsgId;
+            this.deadline = deadline;
+        }
+
+        boolean accepts(String msgId) {
+            return compareMsgId(msgId, anchorMsgId) >= 0;
+        }
+
+        void complete(String reply) {
+            future.complete(new WaitResult(reply, polls));
+        }
+    }
+
+    private static final class Reply {
+        final String msgId;
+        final String content;
+
+        Reply(String msgId, String content) {
+            this.msgId = msgId;
+            this.content = content;
+        }
+    }
+
+    /**
+     * 一个会话的等待和解析状态，所有修改在会话锁内完成，完成future在锁外进行
+     */
+    private static final class Session {
+        final SessionKey key;
+        final String cookie;
+        final String originUrl;
+        // 按登记顺序排列的等待
+        private final Map<Long, Waiter> waiters = new LinkedHashMap<>();
+        // 已解析过的消息ID
+        private final Map<String, Boolean> parsed = lru();
+        // 还没有等待登记的回复
+        private final Map<Long, Reply> unclaimed = lru();
+        // 上次向后查询读到的最后一条消息
+        private String cursor;
+        // 最近几次轮询向后查询的起点，最早的在前
+        private final Deque<String> recentStarts = new ArrayDeque<>();
+        private boolean running;
+        private boolean closed;
+
+        Session(SessionKey key, String cookie, String originUrl) {
+            this.key = key;
+            this.cookie = cookie;
+            this.originUrl = originUrl;
+        }
+
+        private static <K, V> Map<K, V> lru() {
+            return new LinkedHashMap<>(64, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > MAX_REMEMBERED;
+                }
+            };
+        }
+
+        /**
+         * 登记等待；会话已关闭时返回null
+         */
+        synchronized Registration register(Waiter waiter) {
+            if (closed) {
+                return null;
+            }
+            Reply reply = unclaimed.get(waiter.skcId);
+            if (reply != null && waiter.accepts(reply.msgId)) {
+                unclaimed.remove(waiter.skcId);
+                return new Registration(false, reply.content, null);
+            }
+            Waiter replaced = waiters.put(waiter.skcId, waiter);
+            boolean start = !running;
+            running = true;
+            return new Registration(start, null, replaced);
+        }
+
+        /**
+         * 移除超时的等待，返回本次查询的范围；没有等待时关闭会话并返回null
+         * 向后查询从游标开始，还没有游标时从最早的下架消息开始；回看从前几次轮询向后查询的起点开始，不早于最早的下架消息
+         */
+        Window expireAndStart(long now, Consumer<Waiter> onTimeout) {
+            List<Waiter> expired = new ArrayList<>();
+            Window window = null;
+            synchronized (this) {
+                waiters.values().removeIf(waiter -> {
+                    if (now - waiter.deadline >= 0) {
+                        expired.add(waiter);
+                        return true;
+                    }
+                    return false;
+                });
+                String earliest = null;
+                for (Waiter waiter : waiters.values()) {
+                    waiter.polls++;
+                    if (earliest == null || compareMsgId(waiter.anchorMsgId, earliest) < 0) {
+                        earliest = waiter.anchorMsgId;
+                    }
+                }
+                if (waiters.isEmpty()) {
+                    closed = true;
+                    running = false;
+                } else {
+                    String lookbackFrom = recentStarts.peekFirst();
+                    if (lookbackFrom != null && compareMsgId(lookbackFrom, earliest) < 0) {
+                        lookbackFrom = earliest;
+                    }
+                    if (lookbackFrom != null && (cursor == null || compareMsgId(lookbackFrom, cursor) >= 0)) {
+                        lookbackFrom = null;
+                    }
+                    String from = cursor != null ? cursor : earliest;
+                    window = new Window(from, lookbackFrom);
+                    recentStarts.addLast(from);
+                    if (recentStarts.size() > LOOKBACK_TICKS) {
+                        recentStarts.removeFirst();
+                    }
+                }
+            }
+            expired.forEach(onTimeout);
+            return window;
+        }
+
+        /**
+         * 向后查询读到的最后一条消息成为新的游标
+         */
+        synchronized void advance(String last) {
+            if (last != null) {
+                cursor = last;
+            }
+        }
+
+        /**
+         * 回看是否还没有读到游标处
+         */
+        synchronized boolean behindCursor(String msgId) {
+            return cursor != null && compareMsgId(msgId, cursor) < 0;
+        }
+
+        /**
+         * 解析新消息，返回拿到回复的等待
+         */
+        synchronized List<Waiter> dispatch(List<ChatMessage> messages) {
+            List<Waiter> completed = new ArrayList<>();
+            for (ChatMessage message : messages) {
+                String content = message.content();
+                if (message.msgId() == null || parsed.put(message.msgId(), Boolean.TRUE) != null
+                        || content == null || !content.contains("您好")) {
+                    continue;
+                }
+                Matcher matcher = SKC_ID.matcher(content);
+                while (matcher.find()) {
+                    Long skcId = Long.valueOf(matcher.group(1));
+                    Waiter waiter = waiters.get(skcId);
+                    if (waiter != null && waiter.accepts(message.msgId())) {
+                        waiters.remove(skcId);
+                        waiter.reply = content;
+                        completed.add(waiter);
+                    } else {
+                        unclaimed.put(skcId, new Reply(message.msgId(), content));
+                    }
+                }
+            }
+            return completed;
+        }
+
+        synchronized boolean hasWaiters() {
+            return !waiters.isEmpty();
+        }
+
+        synchronized List<Waiter> close() {
+            closed = true;
+            List<Waiter> remaining = new ArrayList<>(waiters.values());
+            waiters.clear();
+            return remaining;
+        }
+    }
+}
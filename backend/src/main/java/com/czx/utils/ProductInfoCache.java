@@ -0,0 +1,93 @@
+package com.czx.utils;
+
+import com.czx.config.TemuCacheProperties;
+import com.czx.pojo.temu.ComplianceItem;
+import com.czx.pojo.temu.ProductSkcBasicInfo;
+import com.czx.pojo.temu.SkcPageItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下架时用到的商品名称和图片缓存，免去每次下架前查询queryProductSkcBasicInfo
+ * 按店铺和SKC缓存，由商品列表（skc/pageQuery）和下架时的查询结果顺带填充；
+ * 违规商品列表只有SPU，另按SPU缓存，SKC未命中时用所属SPU的名称和图片
+ * 超过条目上限时淘汰最久未访问的，命中率见 temu.cache.requests{cache=product-info|product-info-spu}
+ */
+@Component
+public class ProductInfoCache {
+
+    private final boolean enabled;
+    private final TtlCache<Key, ProductSkcBasicInfo> skcCache;
+    private final TtlCache<Key, ProductSkcBasicInfo> spuCache;
+
+    public ProductInfoCache(TemuCacheProperties properties, MeterRegistry meterRegistry) {
+        long ttlMillis = TimeUnit.SECONDS.toMillis(properties.getProductInfoTtlSeconds());
+        this.enabled = ttlMillis > 0 && properties.getProductInfoMaxEntries() > 0;
+        // 不设stale窗口，不会触发后台刷新
+        this.skcCache = new TtlCache<>("product-info", ttlMillis, 0, properties.getProductInfoMaxEntries(),
+                info -> 1, Runnable::run, meterRegistry);
+        this.spuCache = new TtlCache<>("product-info-spu", ttlMillis, 0, properties.getProductInfoMaxEntries(),
+                info -> 1, Runnable::run, meterRegistry);
+    }
+
+    /**
+     * 先按SKC再按所属SPU查找，都未命中时返回null
+     */
+    public ProductSkcBasicInfo get(String mallid, Long skcId, Long spuId) {
+        if (!enabled) {
+            return null;
+        }
+        ProductSkcBasicInfo info = skcCache.getIfPresent(new Key(mallid, skcId));
+        if (info == null && spuId != null) {
+            info = spuCache.getIfPresent(new Key(mallid, spuId));
+        }
+        return info;
+    }
+
+    public void put(String mallid, Long skcId, ProductSkcBasicInfo info) {
+        if (enabled && skcId != null && info != null) {
+            skcCache.put(new Key(mallid, skcId), info);
+        }
+    }
+
+    /**
+     * 从商品列表结果填充，同时记下SPU的名称和图片
+     */
+    public void putSkcItems(String mallid, List<SkcPageItem> items) {
+        if (!enabled || items == null) {
+            return;
+        }
+        for (SkcPageItem item : items) {
+            if (item.productName() == null && item.mainImageUrl() == null) {
+                continue;
+            }
+            ProductSkcBasicInfo info = new ProductSkcBasicInfo(item.productName(), item.mainImageUrl());
+            if (item.productSkcId() != null) {
+                skcCache.put(new Key(mallid, item.productSkcId()), info);
+            }
+            if (item.productId() != null) {
+                spuCache.put(new Key(mallid, item.productId()), info);
+            }
+        }
+    }
+
+    /**
+     * 从违规商品列表填充SPU的名称和图片
+     */
+    public void putComplianceItems(String mallid, List<ComplianceItem> items) {
+        if (!enabled || items == null) {
+            return;
+        }
+        for (ComplianceItem item : items) {
+            if (item.spuId() != null && (item.goodsName() != null || item.goodsImgUrl() != null)) {
+                spuCache.put(new Key(mallid, item.spuId()), new ProductSkcBasicInfo(item.goodsName(), item.goodsImgUrl()));
+            }
+        }
+    }
+
+    private record Key(String mallid, Long id) {
+    }
+}
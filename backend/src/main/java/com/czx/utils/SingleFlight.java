@@ -0,0 +1,73 @@
+package com.czx.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 合并相同key的并发调用：同一时刻只发起一次调用，其余调用方共享结果
+ * 调用完成后立即移除，之后的调用会重新发起，不做缓存
+ * 结果被多个调用方共享时，每个调用方拿到copier复制出的独立副本，互不影响
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copier;
+
+    public SingleFlight(UnaryOperator<V> copier) {
+        this.copier = copier;
+    }
+
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        @SuppressWarnings("unchecked")
+        Flight<V>[] created = new Flight[1];
+        Flight<V> flight = flights.compute(key, (k, existing) -> {
+            if (existing != null) {
+                // 在compute内计数，与完成时的remove互斥，移除后计数不再变化
+                existing.callers.incrementAndGet();
+                return existing;
+            }
+            created[0] = new Flight<>();
+            return created[0];
+        });
+
+        if (created[0] != null) {
+            CompletableFuture<V> upstream;
+            try {
+                upstream = call.get();
+            } catch (RuntimeException e) {
+                upstream = CompletableFuture.failedFuture(e);
+            }
+            upstream.whenComplete((value, e) -> {
+                flights.remove(key, flight);
+                if (e != null) {
+                    flight.future.completeExceptionally(e);
+                } else {
+                    flight.future.complete(value);
+                }
+            });
+        }
+
+        return flight.future.thenApply(value -> value != null && flight.isShared() ? copier.apply(value) : value);
+    }
+
+    /**
+     * 当前正在进行中的调用数
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    private static class Flight<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private final AtomicInteger callers = new AtomicInteger(1);
+
+        boolean isShared() {
+            // future完成前已从map移除，此时callers已固定
+            return callers.get() > 1;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.czx.utils;
+
+import com.czx.config.StatusWriteProperties;
+import com.czx.mapper.ComplianceStatusMapper;
+import com.czx.pojo.ComplianceStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 处理状态的write-behind缓冲
+ * 更新进入缓冲即视为成功，同一(用户, 商品)只保留最后一次写入；缓冲条数达到flushBatchSize或每隔flushIntervalMs批量落库
+ * 落库失败的条目留在缓冲中下次重试；落库期间又有新写入的条目不会被移除
+ * 缓冲已满时调用方改为同步写库，须经writeThrough写入，丢弃缓冲中被覆盖的旧值，避免之后落库时旧值覆盖新值
+ * 读取状态时需要用overlay叠加缓冲中尚未落库的值；关闭应用时同步落库全部缓冲
+ *
+ * 指标：temu.status.write.pending 缓冲条数，temu.status.write.lag 最早一条未落库的等待时间（秒），
+ * temu.status.write.flushed 已落库条数，temu.status.write.flush 每次落库耗时
+ */
+@Component
+public class StatusWriteBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(StatusWriteBuffer.class);
+    // 单条upsert语句的最大行数
+    private static final int MAX_STATEMENT_ROWS = 500;
+    // 关闭时落库的最多尝试次数
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    private final StatusWriteProperties properties;
+    private final ComplianceStatusMapper complianceStatusMapper;
+    // 用户 -> 商品 -> 待落库的状态
+    private final Map<Integer, Map<Long, Pending>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private final Counter flushedCounter;
+    private final Timer flushTimer;
+    private ScheduledExecutorService flusher;
+
+    public StatusWriteBuffer(StatusWriteProperties properties, ComplianceStatusMapper complianceStatusMapper,
+                             MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.complianceStatusMapper = complianceStatusMapper;
+        this.flushedCounter = Counter.builder("temu.status.write.flushed").register(meterRegistry);
+        this.flushTimer = Timer.builder("temu.status.write.flush").register(meterRegistry);
+        Gauge.builder("temu.status.write.pending", pendingCount, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("temu.status.write.lag", this, StatusWriteBuffer::lagSeconds).baseUnit("seconds").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isWriteBehind()) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("status-write-"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, properties.getFlushIntervalMs(),
+                properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭前同步落库全部缓冲，失败时重试
+     */
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int attempt = 1; attempt <= SHUTDOWN_FLUSH_ATTEMPTS && pendingCount.get() > 0; attempt++) {
+            try {
+                flush();
+            } catch (Exception e) {
+                log.error("关闭时落库处理状态失败（第{}次）: {}", attempt, e.getMessage());
+            }
+        }
+        if (pendingCount.get() > 0) {
+            log.error("关闭时仍有{}条处理状态未能落库", pendingCount.get());
+        }
+    }
+
+    /**
+     * 写入缓冲，返回false表示未开启write-behind或缓冲已满，调用方需要经writeThrough同步写库
+     */
+    public boolean offer(Integer userId, Map<Long, Integer> statuses) {
+        if (flusher == null || pendingCount.get() + statuses.size() > properties.getMaxPending()) {
+            return false;
+        }
+        Map<Long, Pending> userPending = pending.computeIfAbsent(userId, key -> new ConcurrentHashMap<>());
+        long now = System.nanoTime();
+        statuses.forEach((productId, status) -> {
+            if (userPending.put(productId, new Pending(status, now)) == null) {
+                pendingCount.incrementAndGet();
+            }
+        });
+        if (pendingCount.get() >= properties.getFlushBatchSize() && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        return true;
+    }
+
+    /**
+     * 绕过缓冲同步写库：在落库锁内先移除这些商品尚未落库的旧值，再执行write
+     * 持有落库锁保证不会有正在进行的落库在这次写入之后写回旧值；write失败时放回移除的旧值
+     */
+    public void writeThrough(Integer userId, Collection<Long> productIds, Runnable write) {
+        Map<Long, Pending> userPending = pending.get(userId);
+        if (userPending == null || userPending.isEmpty()) {
+            write.run();
+            return;
+        }
+        synchronized (flushLock) {
+            Map<Long, Pending> superseded = new HashMap<>();
+            for (Long productId : productIds) {
+                Pending value = userPending.remove(productId);
+                if (value != null) {
+                    superseded.put(productId, value);
+                    pendingCount.decrementAndGet();
+                }
+            }
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                superseded.forEach((productId, value) -> {
+                    if (userPending.putIfAbsent(productId, value) == null) {
+                        pendingCount.incrementAndGet();
+                    }
+                });
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 用缓冲中尚未落库的值覆盖从数据库读到的状态
+     */
+    public void overlay(Integer userId, List<Long> productIds, Map<Long, Integer> statuses) {
+        Map<Long, Pending> userPending = pending.get(userId);
+        if (userPending == null || userPending.isEmpty()) {
+            return;
+        }
+        for (Long productId : productIds) {
+            Pending value = userPending.get(productId);
+            if (value != null) {
+                statuses.put(productId, value.status);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("处理状态落库失败，{}条将在下次重试: {}", pendingCount.get(), e.getMessage());
+        }
+    }
+
+    private void flush() {
+        synchronized (flushLock) {
+            long started = System.nanoTime();
+            int flushed = 0;
+            for (Map.Entry<Integer, Map<Long, Pending>> userEntry : pending.entrySet()) {
+                Integer userId = userEntry.getKey();
+                Map<Long, Pending> userPending = userEntry.getValue();
+                List<Map.Entry<Long, Pending>> snapshot = new ArrayList<>(userPending.entrySet());
+                for (int from = 0; from < snapshot.size(); from += MAX_STATEMENT_ROWS) {
+                    List<Map.Entry<Long, Pending>> chunk = snapshot.subList(from, Math.min(snapshot.size(), from + MAX_STATEMENT_ROWS));
+                    List<ComplianceStatus> rows = new ArrayList<>(chunk.size());
+                    for (Map.Entry<Long, Pending> entry : chunk) {
+                        ComplianceStatus row = new ComplianceStatus();
+                        row.setProductId(entry.getKey());
+                        row.setStatus(entry.getValue().status);
+                        rows.add(row);
+                    }
+                    complianceStatusMapper.saveOrUpdateBatch(userId, rows);
+                    // 只移除已落库的那次写入，落库期间的新写入留到下次
+                    for (Map.Entry<Long, Pending> entry : chunk) {
+                        if (userPending.remove(entry.getKey(), entry.getValue())) {
+                            pendingCount.decrementAndGet();
+                        }
+                    }
+                    flushed += chunk.size();
+                }
+            }
+            if (flushed > 0) {
+                flushedCounter.increment(flushed);
+                flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private double lagSeconds() {
+        long oldest = Long.MAX_VALUE;
+        for (Map<Long, Pending> userPending : pending.values()) {
+            for (Pending value : userPending.values()) {
+                oldest = Math.min(oldest, value.enqueuedAt);
+            }
+        }
+        return oldest == Long.MAX_VALUE ? 0 : (System.nanoTime() - oldest) / 1e9;
+    }
+
+    /**
+     * 按引用比较，用于判断落库后该条目是否又被覆盖
+     */
+    private static final class Pending {
+        final int status;
+        final long enqueuedAt;
+
+        Pending(int status, long enqueuedAt) {
+            this.status = status;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
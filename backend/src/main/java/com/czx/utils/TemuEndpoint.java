@@ -0,0 +1,54 @@
+package com.czx.utils;
+
+/**
+ * TEMU上游接口
+ * 用于按接口区分重试策略、统计指标等；readOnly表示只读查询，可以安全地重试
+ */
+public enum TemuEndpoint {
+    LIST("list", "/merchant_appeal/entrance/list", true),
+    PAGE_QUERY("pageQuery", "/product/skc/pageQuery", true),
+    SEND_MESSAGE("sendMessage", "/chat/sendMessage", false),
+    QUERY_MESSAGE("queryMessage", "/chat/queryMessage", true),
+    PRODUCT_INFO("productInfo", "/queryProductSkcBasicInfo", true),
+    PRECHECK("precheck", "/queryPreInterceptForToolSubmit", true),
+    TOOLS("tools", "/querySelfServiceTools", true),
+    OTHER("other", null, false);
+
+    private final String logicalName;
+    private final String path;
+    private final boolean readOnly;
+
+    TemuEndpoint(String logicalName, String path, boolean readOnly) {
+        this.logicalName = logicalName;
+        this.path = path;
+        this.readOnly = readOnly;
+    }
+
+    public String getLogicalName() {
+        return logicalName;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * 根据请求地址识别接口
+     */
+    public static TemuEndpoint of(String url) {
+        if (url != null) {
+            int queryStart = url.indexOf('?');
+            String path = queryStart >= 0 ? url.substring(0, queryStart) : url;
+            for (TemuEndpoint endpoint : values()) {
+                if (endpoint.path != null && path.endsWith(endpoint.path)) {
+                    return endpoint;
+                }
+            }
+        }
+        return OTHER;
+    }
+}
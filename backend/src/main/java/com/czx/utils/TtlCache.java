@@ -0,0 +1,296 @@
+package com.czx.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * 带过期时间的内存缓存，按权重限制总大小，超出时淘汰最久未访问的条目
+ * 过期后在stale窗口内仍直接返回旧值，同时在后台刷新（stale-while-revalidate）；超过stale窗口才同步加载
+ * 加载失败不缓存，后台刷新失败时保留旧值
+ * 值需要是不可变对象，读取时直接返回缓存中的实例
+ */
+public class TtlCache<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(TtlCache.class);
+
+    private final String name;
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final long maxWeight;
+    private final ToIntFunction<V> weigher;
+    private final Executor refreshExecutor;
+
+    // accessOrder=true，迭代顺序即最久未访问在前
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalWeight;
+    // 每次update/invalidate递增；加载期间有变更命中了该key时结果不写入缓存，避免覆盖新状态，其他key的加载不受影响
+    private long generation;
+    // 进行中的加载：开始时的generation -> 数量
+    private final TreeMap<Long, Integer> loading = new TreeMap<>();
+    // 进行中的加载开始之后发生的变更，所有早于它的加载结束后丢弃
+    private final Deque<Change<K>> changes = new ArrayDeque<>();
+
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public TtlCache(String name, long ttlMillis, long staleMillis, long maxWeight, ToIntFunction<V> weigher,
+                    Executor refreshExecutor, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.staleNanos = staleMillis * 1_000_000L;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.refreshExecutor = refreshExecutor;
+        this.hits = counter(meterRegistry, "hit");
+        this.staleHits = counter(meterRegistry, "stale");
+        this.misses = counter(meterRegistry, "miss");
+        this.evictions = Counter.builder("temu.cache.evictions").tag("cache", name).register(meterRegistry);
+        Gauge.builder("temu.cache.weight", this, TtlCache::weight).tag("cache", name).register(meterRegistry);
+    }
+
+    private Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("temu.cache.requests").tag("cache", name).tag("result", result).register(meterRegistry);
+    }
+
+    /**
+     * 读取缓存，未命中或已超过stale窗口时在当前线程调用loader加载
+     * loader抛出的异常原样抛给调用方
+     */
+    public V get(K key, Supplier<V> loader) {
+        long now = System.nanoTime();
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            long age = now - entry.loadedAt;
+            if (age < ttlNanos) {
+                hits.increment();
+                return entry.value;
+            }
+            if (age < ttlNanos + staleNanos) {
+                staleHits.increment();
+                refreshInBackground(key, entry, loader);
+                return entry.value;
+            }
+        }
+        misses.increment();
+        long startGeneration = beginLoad();
+        try {
+            V value = loader.get();
+            put(key, value, now, startGeneration);
+            return value;
+        } finally {
+            endLoad(startGeneration);
+        }
+    }
+
+    /**
+     * 只读缓存，不在当前线程加载：未过期或在stale窗口内时返回缓存值（后者同时在后台用loader刷新），否则返回null
+     * 用于先找出缺失的条目并行加载，再逐个调用get写入缓存
+     */
+    public V getIfPresent(K key, Supplier<V> loader) {
+        long now = System.nanoTime();
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        long age = now - entry.loadedAt;
+        if (age < ttlNanos) {
+            hits.increment();
+            return entry.value;
+        }
+        if (age < ttlNanos + staleNanos) {
+            staleHits.increment();
+            refreshInBackground(key, entry, loader);
+            return entry.value;
+        }
+        return null;
+    }
+
+    /**
+     * 只读未过期的条目，不加载也不刷新，未命中计入miss
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && System.nanoTime() - entry.loadedAt < ttlNanos) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 直接写入缓存，用于从其他接口的结果顺带填充
+     */
+    public synchronized void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        store(key, new Entry<>(value, System.nanoTime(), weigher.applyAsInt(value)));
+        evictIfNeeded();
+    }
+
+    /**
+     * 是否有未过期的条目，不计入命中统计
+     */
+    public synchronized boolean containsFresh(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && System.nanoTime() - entry.loadedAt < ttlNanos;
+    }
+
+    private void refreshInBackground(K key, Entry<V> entry, Supplier<V> loader) {
+        // 同一条目只触发一次刷新
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        long startGeneration = beginLoad();
+        try {
+            refreshExecutor.execute(() -> {
+                long started = System.nanoTime();
+                try {
+                    put(key, loader.get(), started, startGeneration);
+                } catch (Exception e) {
+                    log.warn("缓存{}后台刷新失败，继续使用旧值: {}", name, e.getMessage());
+                } finally {
+                    endLoad(startGeneration);
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 刷新线程繁忙，下次读取再尝试
+            endLoad(startGeneration);
+            entry.refreshing.set(false);
+        }
+    }
+
+    private synchronized long beginLoad() {
+        loading.merge(generation, 1, Integer::sum);
+        return generation;
+    }
+
+    private synchronized void endLoad(long startGeneration) {
+        loading.computeIfPresent(startGeneration, (g, count) -> count > 1 ? count - 1 : null);
+        long oldest = loading.isEmpty() ? generation : loading.firstKey();
+        while (!changes.isEmpty() && changes.peekFirst().generation <= oldest) {
+            changes.pollFirst();
+        }
+    }
+
+    /**
+     * startGeneration之后是否有变更命中了key
+     */
+    private boolean changedSince(K key, long startGeneration) {
+        for (Change<K> change : changes) {
+            if (change.generation > startGeneration && change.keys.test(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void put(K key, V value, long loadedAt, long startGeneration) {
+        if (value == null || changedSince(key, startGeneration)) {
+            return;
+        }
+        store(key, new Entry<>(value, loadedAt, weigher.applyAsInt(value)));
+        evictIfNeeded();
+    }
+
+    private void store(K key, Entry<V> entry) {
+        Entry<V> previous = entries.put(key, entry);
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        totalWeight += entry.weight;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (totalWeight > maxWeight && iterator.hasNext()) {
+            totalWeight -= iterator.next().weight;
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 原地更新匹配的条目，保留原有的加载时间；updater返回null时移除该条目
+     */
+    public synchronized void update(Predicate<K> keys, UnaryOperator<V> updater) {
+        generation++;
+        if (!loading.isEmpty()) {
+            changes.addLast(new Change<>(generation, keys));
+        }
+        // 先收集再修改，避免在accessOrder的LinkedHashMap上边迭代边put
+        Map<K, Entry<V>> matched = new LinkedHashMap<>();
+        entries.forEach((key, entry) -> {
+            if (keys.test(key)) {
+                matched.put(key, entry);
+            }
+        });
+        matched.forEach((key, entry) -> {
+            V updated = updater.apply(entry.value);
+            if (updated == null) {
+                totalWeight -= entries.remove(key).weight;
+            } else if (updated != entry.value) {
+                store(key, new Entry<>(updated, entry.loadedAt, weigher.applyAsInt(updated)));
+            }
+        });
+        evictIfNeeded();
+    }
+
+    public void invalidate(Predicate<K> keys) {
+        update(keys, value -> null);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
+    private record Change<K>(long generation, Predicate<K> keys) {
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAt;
+        final int weight;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(V value, long loadedAt, int weight) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.weight = weight;
+        }
+    }
+}
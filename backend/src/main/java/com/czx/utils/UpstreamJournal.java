@@ -0,0 +1,161 @@
+package com.czx.utils;
+
+import com.czx.config.TemuHttpProperties;
+import lombok.Data;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * 最近的上游请求记录，替代逐条INFO日志
+ * 固定容量的环形缓冲区，写入只有一次CAS自增和一次数组写，不加锁，旧记录被直接覆盖
+ * 记录中的cookie等敏感请求头已脱敏，请求体和响应体只保留前若干字节
+ */
+@Component
+public class UpstreamJournal {
+
+    // 需要脱敏的请求头
+    private static final Set<String> SENSITIVE_HEADERS = Set.of("cookie", "anti-content", "authorization");
+
+    private final AtomicReferenceArray<Exchange> ring;
+    private final AtomicLong sequence = new AtomicLong();
+    private final int previewBytes;
+
+    public UpstreamJournal(TemuHttpProperties properties) {
+        this.ring = new AtomicReferenceArray<>(Math.max(1, properties.getJournalCapacity()));
+        this.previewBytes = properties.getJournalPreviewBytes();
+    }
+
+    /**
+     * 单次上游请求记录
+     */
+    @Data
+    public static class Exchange {
+        private long id;
+        private long timestamp;
+        private String endpoint;
+        private String method;
+        private String uri;
+        private String mallid;
+        private Map<String, String> requestHeaders;
+        private String requestPreview;
+        private Integer status;
+        private String contentEncoding;
+        private Integer responseBytes;
+        private String responsePreview;
+        private Double durationMs;
+        private String error;
+
+        public boolean isFailed() {
+            return error != null || status == null || status != 200;
+        }
+    }
+
+    /**
+     * 开始记录一次请求，请求完成后再调用record写入
+     */
+    public Exchange begin(TemuEndpoint endpoint, String method, String uri, String mallid,
+                          HttpHeaders headers, byte[] requestBody) {
+        Exchange exchange = new Exchange();
+        exchange.setTimestamp(System.currentTimeMillis());
+        exchange.setEndpoint(endpoint.getLogicalName());
+        exchange.setMethod(method);
+        exchange.setUri(uri);
+        exchange.setMallid(mallid);
+        exchange.setRequestHeaders(redact(headers));
+        if (requestBody != null) {
+            exchange.setRequestPreview(new String(requestBody, 0, Math.min(previewBytes, requestBody.length), StandardCharsets.UTF_8));
+        }
+        return exchange;
+    }
+
+    public void record(Exchange exchange) {
+        long id = sequence.getAndIncrement();
+        exchange.setId(id);
+        ring.set((int) (id % ring.length()), exchange);
+    }
+
+    /**
+     * 最近的记录，按时间倒序
+     */
+    public List<Exchange> recent(int limit, Predicate<Exchange> filter) {
+        List<Exchange> result = new ArrayList<>();
+        long last = sequence.get() - 1;
+        for (long id = last; id >= 0 && id > last - ring.length() && result.size() < limit; id--) {
+            Exchange exchange = ring.get((int) (id % ring.length()));
+            // 读取期间可能已被新记录覆盖，跳过
+            if (exchange != null && exchange.getId() == id && filter.test(exchange)) {
+                result.add(exchange);
+            }
+        }
+        return result;
+    }
+
+    public int capacity() {
+        return ring.length();
+    }
+
+    public long total() {
+        return sequence.get();
+    }
+
+    /**
+     * 包装解码后的响应流，在Jackson读取的同时记下前previewBytes个字节，不额外复制整个响应体
+     */
+    public PreviewInputStream capture(InputStream body) {
+        return new PreviewInputStream(body, previewBytes);
+    }
+
+    private Map<String, String> redact(HttpHeaders headers) {
+        Map<String, String> result = new LinkedHashMap<>();
+        headers.forEach((name, values) -> result.put(name,
+                SENSITIVE_HEADERS.contains(name.toLowerCase()) ? "***" : String.join(",", values)));
+        return result;
+    }
+
+    public static class PreviewInputStream extends FilterInputStream {
+        private final byte[] preview;
+        private int captured;
+
+        PreviewInputStream(InputStream in, int limit) {
+            super(in);
+            this.preview = new byte[Math.max(0, limit)];
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && captured < preview.length) {
+                preview[captured++] = (byte) b;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0 && captured < preview.length) {
+                int copy = Math.min(n, preview.length - captured);
+                System.arraycopy(b, off, preview, captured, copy);
+                captured += copy;
+            }
+            return n;
+        }
+
+        public String preview() {
+            return new String(preview, 0, captured, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.czx.utils;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游请求指标
+ * temu.upstream.requests：单次请求耗时（发出请求到解码完成），按接口、店铺、结果区分，带百分位直方图
+ * temu.upstream.response.size：响应体压缩后的字节数
+ * temu.upstream.decode：解压加JSON解析耗时（两者是流式交织进行的，合并统计）
+ */
+@Component
+public class UpstreamMetrics {
+
+    /**
+     * 请求结果标签
+     */
+    public static final String SUCCESS = "success";
+    public static final String THROTTLED = "throttled";
+    public static final String HTTP_ERROR = "http_error";
+    public static final String INVALID_BODY = "invalid_body";
+    public static final String EXCEPTION = "exception";
+
+    private final MeterRegistry meterRegistry;
+
+    public UpstreamMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void recordRequest(TemuEndpoint endpoint, String mallid, String outcome, long nanos) {
+        Timer.builder("temu.upstream.requests")
+                .description("上游请求耗时")
+                .tag("endpoint", endpoint.getLogicalName())
+                .tag("mall", mallid != null ? mallid : "unknown")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(5))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDecode(TemuEndpoint endpoint, String encoding, int rawBytes, long nanos) {
+        String encodingTag = encoding != null ? encoding.toLowerCase() : "identity";
+        DistributionSummary.builder("temu.upstream.response.size")
+                .description("响应体字节数（压缩后）")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint.getLogicalName())
+                .tag("encoding", encodingTag)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(rawBytes);
+        Timer.builder("temu.upstream.decode")
+                .description("响应解压和解析耗时")
+                .tag("endpoint", endpoint.getLogicalName())
+                .tag("encoding", encodingTag)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
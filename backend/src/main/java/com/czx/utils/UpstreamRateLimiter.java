@@ -0,0 +1,315 @@
+package com.czx.utils;
+
+import com.czx.config.TemuLimiterProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 上游请求限流器，按mallid隔离
+ * 每个店铺一个令牌桶控制速率，再叠加AIMD自适应并发控制：
+ * 收到429、5xx或业务限流提示时并发上限乘以收缩比例，请求成功时并发上限每轮加1
+ * 等待令牌和并发名额都通过future完成，不阻塞线程
+ */
+@Slf4j
+@Component
+public class UpstreamRateLimiter {
+
+    private static final String UNKNOWN_MALL = "unknown";
+    // 被限流后这段时间内都视为有压力（毫秒）
+    private static final long THROTTLE_QUIET_MS = 10_000;
+
+    private final TemuLimiterProperties properties;
+    private final ScheduledExecutorService scheduler;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, MallLimiter> limiters = new ConcurrentHashMap<>();
+
+    public UpstreamRateLimiter(TemuLimiterProperties properties,
+                               @Qualifier("upstreamScheduler") ScheduledExecutorService scheduler,
+                               MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 请求结果，用于调整并发上限
+     */
+    public enum Outcome {
+        // 请求成功
+        SUCCESS,
+        // 被上游限流或上游过载
+        THROTTLED,
+        // 与限流无关的失败，不调整并发上限
+        IGNORED
+    }
+
+    /**
+     * 获取一个请求许可，请求结束后必须调用 Permit.release
+     * 等待并发名额或令牌超时时future以AcquireTimeoutException异常完成
+     */
+    public CompletableFuture<Permit> acquire(String mallid) {
+        if (!properties.isEnabled()) {
+            return CompletableFuture.completedFuture(Permit.NOOP);
+        }
+        return limiterFor(mallid).acquire();
+    }
+
+    /**
+     * 店铺是否还有富余的请求额度，供预取等可有可无的请求判断是否发起：
+     * 没有排队的请求、在途请求不到并发上限的一半、令牌不少于桶容量的一半，且最近没有被限流
+     */
+    public boolean hasHeadroom(String mallid) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        return limiterFor(mallid).hasHeadroom();
+    }
+
+    /**
+     * 当前各店铺的限流状态
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        limiters.forEach((mallid, limiter) -> result.put(mallid, limiter.snapshot()));
+        return result;
+    }
+
+    /**
+     * 判断业务消息是否为限流提示
+     */
+    public boolean isThrottleMessage(String message) {
+        if (message == null) {
+            return false;
+        }
+        String lower = message.toLowerCase();
+        for (String keyword : properties.getThrottleKeywords()) {
+            if (lower.contains(keyword.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MallLimiter limiterFor(String mallid) {
+        return limiters.computeIfAbsent(mallid != null ? mallid : UNKNOWN_MALL, MallLimiter::new);
+    }
+
+    /**
+     * 请求许可
+     */
+    public interface Permit {
+        Permit NOOP = outcome -> { };
+
+        void release(Outcome outcome);
+    }
+
+    /**
+     * 本地排队等待许可超时，请求没有发到上游，不应计入熔断或重试
+     */
+    public static class AcquireTimeoutException extends RejectedExecutionException {
+        public AcquireTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    private class MallLimiter {
+        private final String mallid;
+        private final Queue<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+        private final Counter throttledCounter;
+
+        // 令牌桶
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        // AIMD并发控制
+        private double limit;
+        private int inflight;
+        private long lastDecreaseMillis;
+
+        MallLimiter(String mallid) {
+            this.mallid = mallid;
+            this.tokens = properties.getBurst();
+            this.limit = properties.getInitialConcurrency();
+
+            Gauge.builder("temu.upstream.limiter.concurrency.limit", this, l -> l.currentLimit())
+                    .tag("mall", mallid).register(meterRegistry);
+            Gauge.builder("temu.upstream.limiter.inflight", this, l -> l.currentInflight())
+                    .tag("mall", mallid).register(meterRegistry);
+            Gauge.builder("temu.upstream.limiter.waiting", this, l -> l.currentWaiting())
+                    .tag("mall", mallid).register(meterRegistry);
+            Gauge.builder("temu.upstream.limiter.rate", properties, TemuLimiterProperties::getPermitsPerSecond)
+                    .tag("mall", mallid).register(meterRegistry);
+            this.throttledCounter = Counter.builder("temu.upstream.limiter.throttled")
+                    .tag("mall", mallid).register(meterRegistry);
+        }
+
+        CompletableFuture<Permit> acquire() {
+            CompletableFuture<Permit> slot;
+            synchronized (this) {
+                if (inflight < effectiveLimit()) {
+                    inflight++;
+                    slot = CompletableFuture.completedFuture(null);
+                } else {
+                    slot = new CompletableFuture<Permit>()
+                            .orTimeout(properties.getAcquireTimeoutMs(), TimeUnit.MILLISECONDS);
+                    waiters.add(slot);
+                }
+            }
+            CompletableFuture<Permit> waiter = slot;
+            // 拿到并发名额后再按令牌桶排队
+            return slot.handle((ignored, e) -> {
+                if (e != null) {
+                    // 等待超时立即移出队列，不留到下次release，否则排队数和hasHeadroom都会失真
+                    synchronized (this) {
+                        waiters.remove(waiter);
+                    }
+                    throw new AcquireTimeoutException("上游并发排队超时，店铺: " + mallid);
+                }
+                return ignored;
+            }).thenCompose(ignored -> takeToken());
+        }
+
+        private CompletableFuture<Permit> takeToken() {
+            long waitNanos = reserveToken();
+            // 保证每个许可只归还一次
+            AtomicBoolean released = new AtomicBoolean();
+            Permit permit = outcome -> {
+                if (released.compareAndSet(false, true)) {
+                    release(outcome);
+                }
+            };
+            if (waitNanos == 0) {
+                return CompletableFuture.completedFuture(permit);
+            }
+            if (waitNanos < 0) {
+                release(Outcome.IGNORED);
+                return CompletableFuture.failedFuture(new AcquireTimeoutException("上游限流等待超时，店铺: " + mallid));
+            }
+            CompletableFuture<Permit> future = new CompletableFuture<>();
+            scheduler.schedule(() -> future.complete(permit), waitNanos, TimeUnit.NANOSECONDS);
+            return future;
+        }
+
+        synchronized boolean hasHeadroom() {
+            if (!waiters.isEmpty() || inflight * 2 >= effectiveLimit()
+                    || System.currentTimeMillis() - lastDecreaseMillis < THROTTLE_QUIET_MS) {
+                return false;
+            }
+            double rate = properties.getPermitsPerSecond();
+            if (rate <= 0) {
+                return true;
+            }
+            refill(rate);
+            return tokens * 2 >= properties.getBurst();
+        }
+
+        private void refill(double rate) {
+            long now = System.nanoTime();
+            tokens = Math.min(properties.getBurst(), tokens + (now - lastRefillNanos) * rate / 1_000_000_000d);
+            lastRefillNanos = now;
+        }
+
+        /**
+         * 预约一个令牌，返回需要等待的纳秒数；等待超过上限时返回-1
+         */
+        private synchronized long reserveToken() {
+            double rate = properties.getPermitsPerSecond();
+            if (rate <= 0) {
+                return 0;
+            }
+            refill(rate);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            long waitNanos = (long) ((1 - tokens) / rate * 1_000_000_000d);
+            if (waitNanos > TimeUnit.MILLISECONDS.toNanos(properties.getAcquireTimeoutMs())) {
+                return -1;
+            }
+            tokens -= 1;
+            return waitNanos;
+        }
+
+        private void release(Outcome outcome) {
+            List<CompletableFuture<Permit>> granted = new ArrayList<>();
+            synchronized (this) {
+                inflight--;
+                adjustLimit(outcome);
+                // 有空余名额时唤醒排队的请求
+                while (inflight < effectiveLimit() && !waiters.isEmpty()) {
+                    CompletableFuture<Permit> waiter = waiters.poll();
+                    if (!waiter.isDone()) {
+                        inflight++;
+                        granted.add(waiter);
+                    }
+                }
+            }
+            // 在锁外完成future，避免后续请求逻辑在锁内执行
+            for (CompletableFuture<Permit> waiter : granted) {
+                if (!waiter.complete(null)) {
+                    // 刚好等待超时，归还名额
+                    release(Outcome.IGNORED);
+                }
+            }
+        }
+
+        private void adjustLimit(Outcome outcome) {
+            if (outcome == Outcome.SUCCESS) {
+                limit = Math.min(properties.getMaxConcurrency(), limit + 1.0 / Math.max(1.0, limit));
+            } else if (outcome == Outcome.THROTTLED) {
+                throttledCounter.increment();
+                long now = System.currentTimeMillis();
+                if (now - lastDecreaseMillis >= properties.getDecreaseCooldownMs()) {
+                    lastDecreaseMillis = now;
+                    double previous = limit;
+                    limit = Math.max(properties.getMinConcurrency(), limit * properties.getDecreaseFactor());
+                    log.warn("店铺 {} 触发上游限流，并发上限 {} -> {}", mallid, (int) previous, (int) limit);
+                }
+            }
+        }
+
+        private int effectiveLimit() {
+            // 运行时调整min/max后立即生效
+            return (int) Math.max(properties.getMinConcurrency(), Math.min(properties.getMaxConcurrency(), limit));
+        }
+
+        synchronized double currentLimit() {
+            return effectiveLimit();
+        }
+
+        synchronized double currentInflight() {
+            return inflight;
+        }
+
+        synchronized double currentWaiting() {
+            return waiters.size();
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("concurrencyLimit", effectiveLimit());
+            map.put("inflight", inflight);
+            map.put("waiting", waiters.size());
+            map.put("tokens", Math.round(tokens * 100) / 100.0);
+            map.put("throttled", (long) throttledCounter.count());
+            return map;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.czx.utils;
+
+import com.czx.config.TemuResilienceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 上游请求的重试与熔断
+ * 退避等待通过调度线程延迟执行下一次尝试，等待期间不占用任何线程
+ */
+@Slf4j
+@Component
+public class UpstreamResilience {
+
+    private static final String UNKNOWN_MALL = "unknown";
+
+    private final TemuResilienceProperties properties;
+    private final ScheduledExecutorService scheduler;
+    private final MeterRegistry meterRegistry;
+    private final Map<TemuEndpoint, RetryBudget> retryBudgets = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public UpstreamResilience(TemuResilienceProperties properties,
+                              @Qualifier("upstreamScheduler") ScheduledExecutorService scheduler,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 带重试和熔断执行上游请求
+     * 只读接口在失败、限流或5xx时按指数退避重试；熔断打开时直接失败
+     */
+    public <T> CompletableFuture<UpstreamResponse<T>> execute(TemuEndpoint endpoint, String mallid,
+                                                              Supplier<CompletableFuture<UpstreamResponse<T>>> attempt) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(mallid != null ? mallid : UNKNOWN_MALL, CircuitBreaker::new);
+        RetryBudget budget = retryBudgets.computeIfAbsent(endpoint, RetryBudget::new);
+        budget.onRequest();
+
+        CompletableFuture<UpstreamResponse<T>> result = new CompletableFuture<>();
+        runAttempt(1, endpoint, breaker, budget, attempt, result);
+        return result;
+    }
+
+    /**
+     * 定时轮询，直到返回非null结果或达到最大次数，轮询间隔内不占用线程
+     * 达到最大次数仍无结果时以null完成
+     */
+    public <T> CompletableFuture<T> poll(Supplier<CompletableFuture<T>> attempt, int maxAttempts,
+                                         long initialDelayMs, long intervalMs) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        schedule(() -> runPoll(1, attempt, maxAttempts, intervalMs, result), initialDelayMs);
+        return result;
+    }
+
+    private <T> void runPoll(int attemptNo, Supplier<CompletableFuture<T>> attempt, int maxAttempts,
+                             long intervalMs, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = attempt.get();
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        future.whenComplete((value, e) -> {
+            if (value != null) {
+                result.complete(value);
+            } else if (attemptNo >= maxAttempts) {
+                result.complete(null);
+            } else {
+                schedule(() -> runPoll(attemptNo + 1, attempt, maxAttempts, intervalMs, result), intervalMs);
+            }
+        });
+    }
+
+    private <T> void runAttempt(int attemptNo, TemuEndpoint endpoint, CircuitBreaker breaker, RetryBudget budget,
+                                Supplier<CompletableFuture<UpstreamResponse<T>>> attempt, CompletableFuture<UpstreamResponse<T>> result) {
+        if (!breaker.tryAcquire()) {
+            result.completeExceptionally(new RejectedExecutionException("店铺 " + breaker.mallid + " 上游熔断中，暂停请求"));
+            return;
+        }
+
+        CompletableFuture<UpstreamResponse<T>> future;
+        try {
+            future = attempt.get();
+        } catch (Throwable e) {
+            breaker.ignore();
+            result.completeExceptionally(e);
+            return;
+        }
+        future.whenComplete((response, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            // 本地限流排队超时，请求没有发到上游，不计入熔断也不重试
+            boolean local = cause instanceof UpstreamRateLimiter.AcquireTimeoutException;
+            if (local) {
+                breaker.ignore();
+            } else {
+                breaker.record(e == null && !response.isFailure());
+            }
+
+            boolean retryable = !local && (e != null || response.isRetryable());
+            if (!retryable) {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(response);
+                }
+                return;
+            }
+            if (attemptNo < properties.getMaxAttempts() && endpoint.isReadOnly() && budget.tryWithdraw()) {
+                long delay = backoffDelay(attemptNo);
+                log.warn("上游接口 {} 第{}次请求失败，{}ms后重试", endpoint.getLogicalName(), attemptNo, delay);
+                schedule(() -> runAttempt(attemptNo + 1, endpoint, breaker, budget, attempt, result), delay);
+                return;
+            }
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else {
+                result.complete(response);
+            }
+        });
+    }
+
+    /**
+     * 指数退避加全量随机抖动，避免大量请求同时重试
+     */
+    private long backoffDelay(int attemptNo) {
+        double exponential = properties.getBaseDelayMs() * Math.pow(properties.getMultiplier(), attemptNo - 1);
+        long cap = (long) Math.min(properties.getMaxDelayMs(), exponential);
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+
+    private void schedule(Runnable task, long delayMs) {
+        if (delayMs <= 0) {
+            task.run();
+        } else {
+            scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 每个接口的重试预算：每个请求积累ratio个额度，另外每秒保底积累minPerSecond个，每次重试消耗1个
+     */
+    private class RetryBudget {
+        private final Counter retryCounter;
+        private final Counter exhaustedCounter;
+        private double balance;
+        private long lastRefillNanos = System.nanoTime();
+
+        RetryBudget(TemuEndpoint endpoint) {
+            this.retryCounter = Counter.builder("temu.upstream.retries")
+                    .tag("endpoint", endpoint.getLogicalName()).register(meterRegistry);
+            this.exhaustedCounter = Counter.builder("temu.upstream.retry.budget.exhausted")
+                    .tag("endpoint", endpoint.getLogicalName()).register(meterRegistry);
+        }
+
+        synchronized void onRequest() {
+            refill();
+            balance = Math.min(properties.getRetryBudgetMaxBalance(), balance + properties.getRetryBudgetRatio());
+        }
+
+        synchronized boolean tryWithdraw() {
+            refill();
+            if (balance >= 1) {
+                balance -= 1;
+                retryCounter.increment();
+                return true;
+            }
+            exhaustedCounter.increment();
+            return false;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            balance = Math.min(properties.getRetryBudgetMaxBalance(),
+                    balance + (now - lastRefillNanos) * properties.getRetryBudgetMinPerSecond() / 1_000_000_000d);
+            lastRefillNanos = now;
+        }
+    }
+
+    /**
+     * 店铺熔断器：基于最近N次请求的失败率
+     * CLOSED正常放行；OPEN期间直接拒绝；到期后HALF_OPEN放行少量试探请求，全部成功则恢复，否则重新熔断
+     */
+    private class CircuitBreaker {
+        private static final int CLOSED = 0;
+        private static final int HALF_OPEN = 1;
+        private static final int OPEN = 2;
+
+        private final String mallid;
+        private final boolean[] window;
+        private int windowIndex;
+        private int windowCount;
+        private int windowFailures;
+
+        private int state = CLOSED;
+        private long openUntilMillis;
+        private int halfOpenPermits;
+        private int halfOpenSuccesses;
+
+        CircuitBreaker(String mallid) {
+            this.mallid = mallid;
+            this.window = new boolean[Math.max(1, properties.getBreakerWindowSize())];
+            Gauge.builder("temu.upstream.breaker.state", this, b -> b.currentState())
+                    .description("0-关闭 1-半开 2-熔断")
+                    .tag("mall", mallid).register(meterRegistry);
+        }
+
+        synchronized boolean tryAcquire() {
+            if (state == OPEN) {
+                if (System.currentTimeMillis() < openUntilMillis) {
+                    return false;
+                }
+                state = HALF_OPEN;
+                halfOpenPermits = properties.getBreakerHalfOpenCalls();
+                halfOpenSuccesses = 0;
+                log.info("店铺 {} 熔断到期，进入半开状态试探", mallid);
+            }
+            if (state == HALF_OPEN) {
+                if (halfOpenPermits <= 0) {
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+            return true;
+        }
+
+        /**
+         * 获取许可后没有真正请求上游，半开状态下归还试探名额
+         */
+        synchronized void ignore() {
+            if (state == HALF_OPEN) {
+                halfOpenPermits++;
+            }
+        }
+
+        synchronized void record(boolean success) {
+            if (state == HALF_OPEN) {
+                if (!success) {
+                    trip();
+                } else if (++halfOpenSuccesses >= properties.getBreakerHalfOpenCalls()) {
+                    state = CLOSED;
+                    resetWindow();
+                    log.info("店铺 {} 上游恢复，熔断关闭", mallid);
+                }
+                return;
+            }
+            if (state == OPEN) {
+                return;
+            }
+
+            if (windowCount == window.length) {
+                if (!window[windowIndex]) {
+                    windowFailures--;
+                }
+            } else {
+                windowCount++;
+            }
+            window[windowIndex] = success;
+            if (!success) {
+                windowFailures++;
+            }
+            windowIndex = (windowIndex + 1) % window.length;
+
+            if (windowCount >= properties.getBreakerMinimumCalls()
+                    && windowFailures * 100 >= properties.getBreakerFailureRateThreshold() * windowCount) {
+                trip();
+            }
+        }
+
+        private void trip() {
+            state = OPEN;
+            openUntilMillis = System.currentTimeMillis() + properties.getBreakerOpenMs();
+            resetWindow();
+            log.warn("店铺 {} 上游失败率过高，熔断 {}ms", mallid, properties.getBreakerOpenMs());
+        }
+
+        private void resetWindow() {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+
+        synchronized double currentState() {
+            return state;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.czx.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 单次上游请求的结果
+ */
+@Getter
+@AllArgsConstructor
+public class UpstreamResponse<T> {
+    // HTTP状态码
+    private final int statusCode;
+    // 解析后的响应体，解析失败时为null
+    private final T body;
+    // 是否被上游限流
+    private final boolean throttled;
+
+    /**
+     * 是否值得重试：被限流或上游过载
+     */
+    public boolean isRetryable() {
+        return throttled || statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * 是否为上游故障，计入熔断统计
+     */
+    public boolean isFailure() {
+        return statusCode >= 500;
+    }
+}
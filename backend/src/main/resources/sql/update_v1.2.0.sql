@@ -0,0 +1,31 @@
+-- v1.2.0：违规商品本地镜像
+
+-- 违规商品本地镜像表，由后台同步任务按店铺从TEMU拉取
+CREATE TABLE IF NOT EXISTS `compliance_item` (
+    `id` BIGINT AUTO_INCREMENT PRIMARY KEY,
+    `mallid` VARCHAR(64) NOT NULL COMMENT '店铺ID',
+    `spu_id` BIGINT NOT NULL COMMENT '商品ID',
+    `goods_name` VARCHAR(512) NULL COMMENT '商品名称',
+    `goods_img_url` VARCHAR(1024) NULL COMMENT '商品图片',
+    `site_num` INT NULL COMMENT '违规站点数',
+    `site_ids` VARCHAR(512) NULL COMMENT '违规站点ID，逗号分隔，-1表示全站点',
+    `violation_type` INT NULL COMMENT '违规类型',
+    `violation_desc` VARCHAR(512) NULL COMMENT '违规描述',
+    `punish_num` INT NULL COMMENT '处罚数',
+    `upstream_rank` INT NOT NULL DEFAULT 0 COMMENT '同步时在上游列表中的位置',
+    `content_hash` INT NOT NULL DEFAULT 0 COMMENT '内容摘要，未变化的商品同步时不重写',
+    `first_seen_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '首次同步到的时间',
+    `updated_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY `unique_mall_spu` (`mallid`, `spu_id`),
+    INDEX `idx_mall_order` (`mallid`, `first_seen_at`, `upstream_rank`),
+    INDEX `idx_mall_type_order` (`mallid`, `violation_type`, `first_seen_at`, `upstream_rank`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='违规商品本地镜像表';
+
+-- 各店铺的同步状态
+CREATE TABLE IF NOT EXISTS `compliance_sync_state` (
+    `mallid` VARCHAR(64) NOT NULL PRIMARY KEY COMMENT '店铺ID',
+    `total` INT NOT NULL DEFAULT 0 COMMENT '上次同步的违规商品总数',
+    `last_success_at` TIMESTAMP NULL COMMENT '上次完整同步成功的时间',
+    `last_error` VARCHAR(512) NULL COMMENT '上次同步失败的原因',
+    `updated_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='违规商品同步状态表';
@@ -0,0 +1,35 @@
+-- v1.3.0：异步批量下架任务
+
+-- 批量下架任务，提交后由后台逐个商品下架
+CREATE TABLE IF NOT EXISTS `offline_job` (
+    `id` BIGINT AUTO_INCREMENT PRIMARY KEY,
+    `user_id` INT NOT NULL COMMENT '用户ID',
+    `mallid` VARCHAR(64) NULL COMMENT '店铺ID',
+    `status` VARCHAR(16) NOT NULL DEFAULT 'PENDING' COMMENT 'PENDING-排队中，RUNNING-执行中，COMPLETED-已完成，CANCELLED-已取消，FAILED-失败',
+    `total` INT NOT NULL DEFAULT 0 COMMENT '商品总数',
+    `success_count` INT NOT NULL DEFAULT 0 COMMENT '下架成功数',
+    `failed_count` INT NOT NULL DEFAULT 0 COMMENT '下架失败数',
+    `max_threads` INT NOT NULL DEFAULT 1 COMMENT '请求的并发数',
+    `error` VARCHAR(512) NULL COMMENT '任务失败的原因',
+    `owner` VARCHAR(64) NULL COMMENT '执行该任务的服务实例',
+    `heartbeat_at` TIMESTAMP NULL COMMENT '执行实例最近一次续约的时间，超过租约未续约的未结束任务视为中断',
+    `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '提交时间',
+    `started_at` TIMESTAMP NULL COMMENT '开始执行时间',
+    `finished_at` TIMESTAMP NULL COMMENT '结束时间',
+    `updated_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    INDEX `idx_user_created` (`user_id`, `created_at`),
+    INDEX `idx_finished_at` (`finished_at`, `heartbeat_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='批量下架任务表';
+
+-- 批量下架任务中每个商品的结果
+CREATE TABLE IF NOT EXISTS `offline_job_item` (
+    `id` BIGINT AUTO_INCREMENT PRIMARY KEY,
+    `job_id` BIGINT NOT NULL COMMENT '任务ID',
+    `product_id` BIGINT NOT NULL COMMENT 'SKC ID',
+    `spu_id` BIGINT NULL COMMENT '对应的违规商品ID，全部SKC下架成功后标记为已处理',
+    `status` VARCHAR(16) NOT NULL DEFAULT 'PENDING' COMMENT 'PENDING-未处理，SUCCESS-下架成功，FAILED-下架失败，CANCELLED-已取消',
+    `message` VARCHAR(512) NULL COMMENT '下架结果说明',
+    `updated_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY `unique_job_product` (`job_id`, `product_id`),
+    INDEX `idx_job_status` (`job_id`, `status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='批量下架任务明细表';
@@ -0,0 +1,104 @@
+package com.czx.mapper;
+
+import com.czx.pojo.ComplianceStatus;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 通过mapper代理执行流式查询，确认ResultHandler的映射可用
+ */
+class ComplianceStatusMapperTests {
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    @BeforeEach
+    void setUp() {
+        UnpooledDataSource dataSource = new UnpooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:compliance_status_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "") {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return ignoreStreamingFetchSize(super.getConnection());
+            }
+        };
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(ComplianceStatusMapper.class);
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+        try (SqlSession session = sqlSessionFactory.openSession(true)) {
+            session.getConnection().createStatement().execute("CREATE TABLE compliance_status ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, user_id INT NOT NULL, product_id BIGINT NOT NULL, "
+                    + "status TINYINT NOT NULL DEFAULT 0, processed_time TIMESTAMP NULL, "
+                    + "UNIQUE KEY unique_user_product (user_id, product_id))");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void streamByUserIdDeliversEveryRowOfTheUser() {
+        try (SqlSession session = sqlSessionFactory.openSession(true)) {
+            ComplianceStatusMapper mapper = session.getMapper(ComplianceStatusMapper.class);
+            mapper.saveOrUpdateBatch(1, List.of(status(101L, 1), status(102L, 0), status(103L, 1)));
+            mapper.saveOrUpdateBatch(2, List.of(status(101L, 0)));
+
+            Map<Long, Integer> streamed = new HashMap<>();
+            mapper.streamByUserId(1, context -> {
+                ComplianceStatus row = context.getResultObject();
+                streamed.put(row.getProductId(), row.getStatus());
+            });
+
+            assertEquals(Map.of(101L, 1, 102L, 0, 103L, 1), streamed);
+        }
+    }
+
+    /**
+     * fetchSize=Integer.MIN_VALUE是MySQL驱动的流式读取标记，H2不接受，这里忽略这一设置，其余照常执行
+     */
+    private static Connection ignoreStreamingFetchSize(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement) {
+                        Class<?> type = method.getReturnType();
+                        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                                (p, m, a) -> m.getName().equals("setFetchSize") && (int) a[0] == Integer.MIN_VALUE
+                                        ? null : invoke(statement, m, a));
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static ComplianceStatus status(Long productId, int status) {
+        ComplianceStatus item = new ComplianceStatus();
+        item.setProductId(productId);
+        item.setStatus(status);
+        return item;
+    }
+}
@@ -0,0 +1,61 @@
+package com.czx.simulator;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 最简Brotli编码：只输出未压缩的meta-block（RFC 7932 9.2节）
+ * 生成的是合法的br数据流，足以覆盖客户端的br解码路径，不追求压缩率，也不需要引入原生编码库
+ */
+final class BrotliStoredEncoder {
+
+    // 每个meta-block最多65536字节，MLEN用4个半字节表示
+    private static final int MAX_BLOCK = 1 << 16;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private int bitBuffer;
+    private int bitCount;
+
+    private BrotliStoredEncoder() {
+    }
+
+    static byte[] encode(byte[] data) {
+        BrotliStoredEncoder encoder = new BrotliStoredEncoder();
+        // WBITS=22：首位1，后3位为22-17=5
+        encoder.writeBits(1, 1);
+        encoder.writeBits(5, 3);
+        for (int offset = 0; offset < data.length; offset += MAX_BLOCK) {
+            int length = Math.min(MAX_BLOCK, data.length - offset);
+            // ISLAST=0，MNIBBLES=4，MLEN-1，ISUNCOMPRESSED=1
+            encoder.writeBits(0, 1);
+            encoder.writeBits(0, 2);
+            encoder.writeBits(length - 1, 16);
+            encoder.writeBits(1, 1);
+            encoder.alignToByte();
+            encoder.out.write(data, offset, length);
+        }
+        // ISLAST=1，ISLASTEMPTY=1
+        encoder.writeBits(1, 1);
+        encoder.writeBits(1, 1);
+        encoder.alignToByte();
+        return encoder.out.toByteArray();
+    }
+
+    private void writeBits(int value, int count) {
+        for (int i = 0; i < count; i++) {
+            bitBuffer |= ((value >>> i) & 1) << bitCount;
+            if (++bitCount == 8) {
+                out.write(bitBuffer);
+                bitBuffer = 0;
+                bitCount = 0;
+            }
+        }
+    }
+
+    private void alignToByte() {
+        if (bitCount > 0) {
+            out.write(bitBuffer);
+            bitBuffer = 0;
+            bitCount = 0;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.czx.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 生成与TEMU接口结构一致的响应数据
+ * 同一店铺、同一序号的数据每次生成结果相同，便于翻页和对比
+ */
+class PayloadGenerator {
+
+    private static final String[] GOODS_WORDS = {"女士", "男士", "儿童", "夏季", "冬季", "纯棉", "防水", "便携",
+            "连衣裙", "T恤", "运动鞋", "背包", "手机壳", "收纳盒", "保温杯", "耳机", "台灯", "抱枕"};
+    private static final String[][] VIOLATIONS = {
+            {"1", "商品信息与实物不符"}, {"2", "疑似侵犯知识产权"}, {"3", "资质证明缺失"},
+            {"4", "商品质量不合格"}, {"5", "禁售商品"}};
+    private static final int[] SITE_IDS = {100, 101, 102, 103, 104, 105};
+
+    private final ObjectMapper objectMapper;
+
+    PayloadGenerator(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 违规商品列表 merchant_appeal/entrance/list
+     */
+    ObjectNode complianceList(String mallid, int pageNum, int pageSize, Integer violationType, int total) {
+        ArrayNode items = objectMapper.createArrayNode();
+        int from = Math.max(0, (pageNum - 1) * pageSize);
+        for (int index = from; index < Math.min(total, from + pageSize); index++) {
+            Random random = random(mallid, index);
+            String[] violation = VIOLATIONS[random.nextInt(VIOLATIONS.length)];
+            if (violationType != null) {
+                violation = VIOLATIONS[Math.floorMod(violationType - 1, VIOLATIONS.length)];
+            }
+            ObjectNode item = items.addObject();
+            item.put("spu_id", spuId(mallid, index));
+            item.put("goods_name", goodsName(random));
+            item.put("goods_img_url", "https://img.example.com/goods/" + spuId(mallid, index) + ".jpg");
+
+            ArrayNode details = item.putArray("punish_detail_list");
+            boolean allSite = random.nextInt(5) == 0;
+            if (allSite) {
+                details.addObject().put("site_id", -1).put("punish_type", 1);
+                item.put("site_num", 1);
+            } else {
+                int siteNum = 1 + random.nextInt(SITE_IDS.length);
+                for (int i = 0; i < siteNum; i++) {
+                    details.addObject().put("site_id", SITE_IDS[i]).put("punish_type", 1);
+                }
+                item.put("site_num", siteNum);
+            }
+            item.put("violation_type", Integer.parseInt(violation[0]));
+            item.put("violation_desc", violation[1]);
+            item.put("punish_num", 1 + random.nextInt(3));
+            item.put("appeal_status", 0);
+        }
+
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("total", total);
+        result.set("punish_appeal_entrance_list", items);
+        return success(result);
+    }
+
+    /**
+     * 商品列表 product/skc/pageQuery
+     */
+    ObjectNode productPage(String mallid, int page, int pageSize, List<Long> productIds, String productName, int total) {
+        ArrayNode items = objectMapper.createArrayNode();
+        if (productIds != null && !productIds.isEmpty()) {
+            for (Long productId : productIds) {
+                addProduct(items, mallid, (int) Math.floorMod(productId, (long) Math.max(1, total)), productId);
+            }
+        } else {
+            int from = Math.max(0, (page - 1) * pageSize);
+            for (int index = from; index < Math.min(total, from + pageSize); index++) {
+                addProduct(items, mallid, index, spuId(mallid, index));
+            }
+        }
+        if (productName != null && !productName.isEmpty()) {
+            ArrayNode filtered = objectMapper.createArrayNode();
+            items.forEach(item -> {
+                if (item.path("productName").asText().contains(productName)) {
+                    filtered.add(item);
+                }
+            });
+            items = filtered;
+        }
+
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("total", productIds != null && !productIds.isEmpty() ? items.size() : total);
+        result.set("pageItems", items);
+        return success(result);
+    }
+
+    private void addProduct(ArrayNode items, String mallid, int index, long productSkcId) {
+        Random random = random(mallid, index);
+        ObjectNode item = items.addObject();
+        item.put("productSkcId", productSkcId);
+        item.put("productId", productSkcId / 10);
+        item.put("productName", goodsName(random));
+        item.put("mainImageUrl", "https://img.example.com/goods/" + productSkcId + ".jpg");
+        item.put("createdAt", 1_700_000_000_000L + random.nextInt(1_000_000_000));
+        item.put("skcStatus", random.nextInt(4) == 0 ? 11 : 7);
+        item.put("skcSiteStatus", random.nextInt(3) == 0 ? 1 : 0);
+        int catId = 20000 + random.nextInt(20);
+        item.putObject("leafCat").put("catId", catId).put("catName", "类目" + catId);
+
+        ArrayNode skus = item.putArray("productSkuSummaries");
+        int totalStock = 0;
+        int skuCount = 1 + random.nextInt(4);
+        for (int i = 0; i < skuCount; i++) {
+            int stock = random.nextInt(200);
+            totalStock += stock;
+            ObjectNode sku = skus.addObject();
+            sku.put("productSkuId", productSkcId * 10 + i);
+            sku.put("supplierPrice", 500 + random.nextInt(20000));
+            sku.put("virtualStock", stock);
+        }
+        item.put("virtualStock", totalStock);
+    }
+
+    /**
+     * 商品基础信息 queryProductSkcBasicInfo
+     */
+    ObjectNode productInfo(String mallid, long productSkcId) {
+        Random random = random(mallid, (int) productSkcId);
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("productSkcId", productSkcId);
+        result.put("productName", goodsName(random));
+        result.put("productPicture", "https://img.example.com/goods/" + productSkcId + ".jpg");
+        return success(result);
+    }
+
+    /**
+     * 下架预检查 queryPreInterceptForToolSubmit
+     */
+    ObjectNode precheck() {
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("interceptCode", 0);
+        result.putNull("interceptMsg");
+        return success(result);
+    }
+
+    /**
+     * 自助工具列表 querySelfServiceTools
+     */
+    ObjectNode selfServiceTools(String toolId) {
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode list = result.putArray("list");
+        list.addObject().put("toolId", toolId).put("toolName", "商品下架");
+        list.addObject().put("toolId", "10002").put("toolName", "修改库存");
+        return success(result);
+    }
+
+    ObjectNode success(ObjectNode result) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("success", true);
+        body.put("errorCode", 1000000);
+        body.putNull("errorMsg");
+        body.set("result", result);
+        return body;
+    }
+
+    ObjectNode failure(String message) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("success", false);
+        body.put("errorCode", 4000004);
+        body.put("errorMsg", message);
+        return body;
+    }
+
+    private long spuId(String mallid, int index) {
+        return 600_000_000_000L + Math.floorMod(mallid.hashCode(), 1000) * 1_000_000L + index;
+    }
+
+    private String goodsName(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            name.append(GOODS_WORDS[random.nextInt(GOODS_WORDS.length)]);
+        }
+        return name.toString();
+    }
+
+    private Random random(String mallid, int index) {
+        return new Random(mallid.hashCode() * 31L + index);
+    }
+}
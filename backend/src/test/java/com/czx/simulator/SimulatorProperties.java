@@ -0,0 +1,32 @@
+package com.czx.simulator;
+
+import lombok.Data;
+
+/**
+ * TEMU模拟服务配置，对应 temu.simulator.*
+ */
+@Data
+public class SimulatorProperties {
+    // 监听端口，0表示随机端口
+    private int port = 18089;
+    // 响应延迟中位数（毫秒），延迟服从对数正态分布
+    private long latencyMedianMs = 80;
+    // 响应延迟P99（毫秒）
+    private long latencyP99Ms = 600;
+    // 返回500的概率
+    private double errorRate = 0;
+    // 返回429的概率
+    private double throttleRate = 0;
+    // 返回success=false且提示操作频繁的概率
+    private double businessThrottleRate = 0;
+    // 响应压缩格式：gzip、br、identity
+    private String encoding = "gzip";
+    // 客服回复的延迟（毫秒）
+    private long chatReplyDelayMs = 1500;
+    // 下架结果为"暂时无法操作下架"的概率
+    private double offlineRejectRate = 0.1;
+    // 每个店铺的违规商品总数
+    private int complianceTotal = 500;
+    // 每个店铺的商品总数
+    private int productTotal = 2000;
+}
@@ -0,0 +1,301 @@
+package com.czx.simulator;
+
+import com.czx.utils.TemuEndpoint;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 本地TEMU上游模拟服务，用于压测和延迟测试
+ * 实现了TemuServiceImpl调用的全部接口，支持配置延迟分布、错误率、限流、响应压缩格式和客服异步回复
+ * 延迟通过调度线程延后发送响应，不占用处理线程，可以模拟大量并发的慢请求
+ *
+ * 在Spring测试中使用 simulator profile 自动启动；也可以直接运行main方法单独启动，
+ * 再把应用的 temu.http.base-url 指向 http://localhost:端口
+ */
+@Slf4j
+public class TemuSimulator {
+
+    // 客服发送"商品下架"按钮时携带的工具ID
+    static final String OFFLINE_TOOL_ID = "10001";
+    // 客服消息的发送者类型
+    private static final int SENDER_SERVICE = 1001;
+    private static final int SENDER_MERCHANT = 1;
+
+    private final SimulatorProperties properties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PayloadGenerator generator = new PayloadGenerator(objectMapper);
+    private final AtomicLong msgIdSequence = new AtomicLong(7_000_000_000L);
+    // 每个店铺一个会话
+    private final Map<String, List<ChatMessage>> conversations = new ConcurrentHashMap<>();
+    private final Map<TemuEndpoint, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private ExecutorService handlerExecutor;
+    private ScheduledExecutorService responseScheduler;
+
+    public TemuSimulator(SimulatorProperties properties) {
+        this.properties = properties;
+    }
+
+    public static void main(String[] args) throws IOException {
+        SimulatorProperties properties = new SimulatorProperties();
+        if (args.length > 0) {
+            properties.setPort(Integer.parseInt(args[0]));
+        }
+        TemuSimulator simulator = new TemuSimulator(properties);
+        simulator.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::stop));
+    }
+
+    public synchronized void start() throws IOException {
+        handlerExecutor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        responseScheduler = Executors.newScheduledThreadPool(2);
+        server = HttpServer.create(new InetSocketAddress(properties.getPort()), 1024);
+        server.setExecutor(handlerExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("TEMU模拟服务已启动: {}", getBaseUrl());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            responseScheduler.shutdownNow();
+            handlerExecutor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public SimulatorProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * 各接口收到的请求数
+     */
+    public long requestCount(TemuEndpoint endpoint) {
+        AtomicLong count = requestCounts.get(endpoint);
+        return count != null ? count.get() : 0;
+    }
+
+    public void reset() {
+        conversations.clear();
+        requestCounts.clear();
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            byte[] requestBody = exchange.getRequestBody().readAllBytes();
+            TemuEndpoint endpoint = TemuEndpoint.of(exchange.getRequestURI().getPath());
+            requestCounts.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+
+            String mallid = exchange.getRequestHeaders().getFirst("mallid");
+            JsonNode request = requestBody.length > 0 ? objectMapper.readTree(requestBody) : objectMapper.createObjectNode();
+
+            int status = 200;
+            ObjectNode body;
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < properties.getErrorRate()) {
+                status = 500;
+                body = generator.failure("系统繁忙");
+            } else if (roll < properties.getErrorRate() + properties.getThrottleRate()) {
+                status = 429;
+                body = generator.failure("Too Many Requests");
+            } else if (roll < properties.getErrorRate() + properties.getThrottleRate() + properties.getBusinessThrottleRate()) {
+                body = generator.failure("操作太频繁，请稍后再试");
+            } else {
+                body = dispatch(endpoint, mallid != null ? mallid : "0", request);
+                if (body == null) {
+                    status = 404;
+                    body = generator.failure("接口不存在");
+                }
+            }
+
+            byte[] payload = objectMapper.writeValueAsBytes(body);
+            int finalStatus = status;
+            responseScheduler.schedule(() -> respond(exchange, finalStatus, payload), sampleLatencyMs(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.error("模拟服务处理请求失败: {}", e.getMessage());
+            exchange.close();
+        }
+    }
+
+    private ObjectNode dispatch(TemuEndpoint endpoint, String mallid, JsonNode request) {
+        switch (endpoint) {
+            case LIST:
+                return generator.complianceList(mallid, request.path("page_num").asInt(1), request.path("page_size").asInt(10),
+                        request.hasNonNull("violation_type") ? request.get("violation_type").asInt() : null,
+                        properties.getComplianceTotal());
+            case PAGE_QUERY:
+                List<Long> productIds = new ArrayList<>();
+                request.path("productIds").forEach(id -> productIds.add(id.asLong()));
+                return generator.productPage(mallid, request.path("page").asInt(1), request.path("pageSize").asInt(10),
+                        productIds, request.hasNonNull("productName") ? request.get("productName").asText() : null,
+                        properties.getProductTotal());
+            case PRODUCT_INFO:
+                return generator.productInfo(mallid, request.path("productSkcId").asLong());
+            case PRECHECK:
+                return generator.precheck();
+            case TOOLS:
+                return generator.selfServiceTools(OFFLINE_TOOL_ID);
+            case SEND_MESSAGE:
+                return sendMessage(mallid, request);
+            case QUERY_MESSAGE:
+                return queryMessage(mallid, request);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 商家发送消息，客服在chatReplyDelayMs后异步回复
+     */
+    private ObjectNode sendMessage(String mallid, JsonNode request) {
+        List<ChatMessage> conversation = conversations.computeIfAbsent(mallid, key -> new ArrayList<>());
+        int contentType = request.path("contentType").asInt();
+        String content = request.path("content").asText();
+        long now = System.currentTimeMillis();
+        long replyAt = now + properties.getChatReplyDelayMs();
+
+        long msgId;
+        synchronized (conversation) {
+            msgId = msgIdSequence.incrementAndGet();
+            conversation.add(new ChatMessage(msgId, SENDER_MERCHANT, contentType, content, now));
+
+            if (contentType == 1 && content.contains("商品下架")) {
+                String button = "{\"btnText\":\"发商品\",\"toolId\":" + OFFLINE_TOOL_ID + "}";
+                conversation.add(new ChatMessage(msgIdSequence.incrementAndGet(), SENDER_SERVICE, 6, button, replyAt));
+            } else if (contentType == 7) {
+                String dataId = "";
+                try {
+                    dataId = objectMapper.readTree(content).path("dataId").asText();
+                } catch (IOException e) {
+                    // 内容不是JSON时按空商品处理
+                }
+                String reply = ThreadLocalRandom.current().nextDouble() < properties.getOfflineRejectRate()
+                        ? "您好，【SKC ID：" + dataId + "】暂时无法操作下架，请稍后重试"
+                        : "您好，【SKC ID：" + dataId + "】已下架";
+                conversation.add(new ChatMessage(msgIdSequence.incrementAndGet(), SENDER_SERVICE, 1, reply, replyAt));
+            }
+        }
+
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("msgId", String.valueOf(msgId));
+        return generator.success(result);
+    }
+
+    /**
+     * 查询msgId之后、当前已可见的消息
+     */
+    private ObjectNode queryMessage(String mallid, JsonNode request) {
+        long afterMsgId = request.path("msgId").asLong();
+        int limit = request.path("limit").asInt(20);
+        long now = System.currentTimeMillis();
+
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode messageList = result.putArray("messageList");
+        List<ChatMessage> conversation = conversations.get(mallid);
+        if (conversation != null) {
+            synchronized (conversation) {
+                for (ChatMessage message : conversation) {
+                    if (messageList.size() >= limit) {
+                        break;
+                    }
+                    if (message.msgId > afterMsgId && message.visibleAt <= now) {
+                        messageList.addObject()
+                                .put("msgId", String.valueOf(message.msgId))
+                                .put("senderType", message.senderType)
+                                .put("contentType", message.contentType)
+                                .put("content", message.content)
+                                .put("sendTime", message.visibleAt);
+                    }
+                }
+            }
+        }
+        return generator.success(result);
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] payload) {
+        try (OutputStream out = exchange.getResponseBody()) {
+            byte[] encoded = encode(payload);
+            exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+            if (!"identity".equalsIgnoreCase(properties.getEncoding())) {
+                exchange.getResponseHeaders().set("Content-Encoding", properties.getEncoding());
+            }
+            exchange.sendResponseHeaders(status, encoded.length);
+            out.write(encoded);
+        } catch (IOException e) {
+            log.debug("模拟服务发送响应失败: {}", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] encode(byte[] payload) throws IOException {
+        switch (properties.getEncoding().toLowerCase()) {
+            case "gzip":
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                    gzip.write(payload);
+                }
+                return buffer.toByteArray();
+            case "br":
+                return BrotliStoredEncoder.encode(payload);
+            default:
+                return payload;
+        }
+    }
+
+    /**
+     * 对数正态分布的延迟：由中位数和P99推出sigma
+     */
+    private long sampleLatencyMs() {
+        long median = properties.getLatencyMedianMs();
+        if (median <= 0) {
+            return 0;
+        }
+        double sigma = Math.log(Math.max(properties.getLatencyP99Ms(), median) / (double) median) / 2.326;
+        return Math.round(median * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    private static class ChatMessage {
+        final long msgId;
+        final int senderType;
+        final int contentType;
+        final String content;
+        final long visibleAt;
+
+        ChatMessage(long msgId, int senderType, int contentType, String content, long visibleAt) {
+            this.msgId = msgId;
+            this.senderType = senderType;
+            this.contentType = contentType;
+            this.content = content;
+            this.visibleAt = visibleAt;
+        }
+    }
+}
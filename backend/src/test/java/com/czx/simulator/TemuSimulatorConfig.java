@@ -0,0 +1,26 @@
+package com.czx.simulator;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * simulator profile：随应用上下文启动TEMU模拟服务
+ * application-simulator.yml 中把 temu.http.base-url 指向模拟服务端口
+ */
+@Configuration
+@Profile("simulator")
+public class TemuSimulatorConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "temu.simulator")
+    public SimulatorProperties simulatorProperties() {
+        return new SimulatorProperties();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public TemuSimulator temuSimulator(SimulatorProperties simulatorProperties) {
+        return new TemuSimulator(simulatorProperties);
+    }
+}
@@ -0,0 +1,139 @@
+package com.czx.simulator;
+
+import com.czx.config.TemuHttpProperties;
+import com.czx.pojo.temu.SkcPageResult;
+import com.czx.pojo.temu.TemuResponse;
+import com.czx.utils.NetworkRequest;
+import com.czx.utils.TemuEndpoint;
+import com.czx.utils.UpstreamJournal;
+import com.czx.utils.UpstreamResilience;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 通过本地模拟服务验证上游请求链路
+ */
+@SpringBootTest(properties = {"temu.simulator.port=0", "temu.simulator.latency-median-ms=20",
+        "temu.simulator.latency-p99-ms=100", "temu.simulator.chat-reply-delay-ms=300"})
+@ActiveProfiles("simulator")
+class TemuSimulatorTests {
+
+    private static final String MALLID = "634418212233";
+
+    @Autowired
+    TemuSimulator simulator;
+
+    @Autowired
+    NetworkRequest networkRequest;
+
+    @Autowired
+    UpstreamResilience resilience;
+
+    @Autowired
+    TemuHttpProperties httpProperties;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    UpstreamJournal journal;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        // 随机端口启动后再指向模拟服务
+        httpProperties.setBaseUrl(simulator.getBaseUrl());
+        simulator.getProperties().setEncoding("gzip");
+        simulator.reset();
+    }
+
+    @Test
+    void complianceListWithEachEncoding() {
+        for (String encoding : new String[]{"gzip", "br", "identity"}) {
+            simulator.getProperties().setEncoding(encoding);
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("page_num", 2);
+            payload.put("page_size", 20);
+            payload.put("target_type", "goods");
+
+            Optional<JsonNode> response = networkRequest.post(
+                    httpProperties.getBaseUrl() + "/mms/tmod_punish/agent/merchant_appeal/entrance/list",
+                    payload, "cookie", MALLID, httpProperties.getBaseUrl());
+
+            assertTrue(response.isPresent(), encoding);
+            JsonNode result = response.get().get("result");
+            assertEquals(500, result.get("total").asInt());
+            assertEquals(20, result.get("punish_appeal_entrance_list").size());
+            assertTrue(result.get("punish_appeal_entrance_list").get(0).has("spu_id"));
+        }
+        assertEquals(3, simulator.requestCount(TemuEndpoint.LIST));
+        assertEquals(3, meterRegistry.get("temu.upstream.requests")
+                .tags("endpoint", "list", "mall", MALLID, "outcome", "success").timer().count());
+        assertEquals(3, meterRegistry.get("temu.upstream.response.size").tag("endpoint", "list").summaries().size());
+
+        UpstreamJournal.Exchange exchange = journal.recent(1, e -> "list".equals(e.getEndpoint())).get(0);
+        assertEquals("***", exchange.getRequestHeaders().get("cookie"));
+        assertEquals(200, exchange.getStatus());
+        assertTrue(exchange.getResponsePreview().startsWith("{\"success\":true"));
+    }
+
+    @Test
+    void typedResponseKeepsFrontendFields() throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("page", 1);
+        payload.put("pageSize", 5);
+        TemuResponse<SkcPageResult> response = networkRequest.post(
+                httpProperties.getBaseUrl() + "/visage-agent-seller/product/skc/pageQuery",
+                payload, "cookie", MALLID, httpProperties.getBaseUrl(), SkcPageResult.class).orElseThrow();
+
+        assertTrue(response.succeeded());
+        assertEquals(5, response.result().pageItems().size());
+        JsonNode item = objectMapper.valueToTree(response.result().pageItems().get(0));
+        for (String field : new String[]{"productSkcId", "productId", "productName", "mainImageUrl", "createdAt",
+                "skcStatus", "skcSiteStatus", "productSkuSummaries"}) {
+            assertTrue(item.has(field), field);
+        }
+        assertTrue(item.get("productSkuSummaries").get(0).has("supplierPrice"));
+    }
+
+    @Test
+    void chatReplyArrivesAfterDelay() {
+        String sendUrl = httpProperties.getBaseUrl() + "/bg/cute/api/merchantService/chat/sendMessage";
+        String queryUrl = httpProperties.getBaseUrl() + "/bg/cute/api/merchantService/chat/queryMessage";
+
+        Map<String, Object> init = new HashMap<>();
+        init.put("contentType", 1);
+        init.put("content", "商品下架");
+        JsonNode sent = networkRequest.post(sendUrl, init, "cookie", MALLID, httpProperties.getBaseUrl()).orElseThrow();
+        String msgId = sent.get("result").get("msgId").asText();
+
+        Map<String, Object> query = new HashMap<>();
+        query.put("msgId", msgId);
+        query.put("direction", 2);
+        query.put("limit", 20);
+        JsonNode reply = resilience.<JsonNode>poll(() -> {
+            CompletableFuture<JsonNode> response = networkRequest.postAsync(queryUrl, query, "cookie", MALLID, httpProperties.getBaseUrl());
+            return response.thenApply(body -> body != null && body.get("result").get("messageList").size() > 0
+                    ? body.get("result").get("messageList").get(0) : null);
+        }, 20, 0, 100).join();
+
+        assertNotNull(reply);
+        assertEquals(1001, reply.get("senderType").asInt());
+        assertTrue(reply.get("content").asText().contains(TemuSimulator.OFFLINE_TOOL_ID));
+    }
+}
@@ -0,0 +1,46 @@
+package com.czx.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 开放寻址哈希表与HashMap的行为一致，包括键0、覆盖写入和扩容
+ */
+class LongIntMapTests {
+
+    @Test
+    void matchesHashMapAcrossResizes() {
+        LongIntMap map = new LongIntMap(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            // 连续ID、负数和随机ID混合，部分键重复写入
+            long key = switch (i % 3) {
+                case 0 -> i / 3;
+                case 1 -> -random.nextInt(1000);
+                default -> random.nextLong();
+            };
+            int value = random.nextInt();
+            Integer previous = expected.put(key, value);
+            assertEquals(previous == null ? 1 : 0, map.put(key, value));
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key, Integer.MIN_VALUE)));
+        assertEquals(-1, map.get(Long.MAX_VALUE - 7, -1));
+    }
+
+    @Test
+    void zeroKeyIsStoredSeparately() {
+        LongIntMap map = new LongIntMap(16);
+        assertEquals(-1, map.get(0, -1));
+        assertEquals(1, map.put(0, 5));
+        assertEquals(0, map.put(0, 6));
+        assertEquals(6, map.get(0, -1));
+        assertEquals(1, map.size());
+    }
+}
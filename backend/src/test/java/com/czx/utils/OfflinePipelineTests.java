@@ -0,0 +1,121 @@
+package com.czx.utils;
+
+import com.czx.config.TemuOfflineProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分阶段流水线：后一阶段排满时压力逐级向前传递，提前结束和异常跳过后续阶段
+ */
+class OfflinePipelineTests {
+
+    private OfflinePipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    private OfflinePipeline newPipeline(int workers, int capacity) {
+        TemuOfflineProperties properties = new TemuOfflineProperties();
+        properties.setInfoWorkers(workers);
+        properties.setPrecheckWorkers(workers);
+        properties.setSendWorkers(workers);
+        properties.setConfirmWorkers(workers);
+        properties.setStageQueueCapacity(capacity);
+        pipeline = new OfflinePipeline(properties, new SimpleMeterRegistry());
+        return pipeline;
+    }
+
+    @Test
+    void blockedLastStageHoldsBackEarlierStages() throws Exception {
+        OfflinePipeline pipeline = newPipeline(1, 1);
+        AtomicInteger started = new AtomicInteger();
+        Queue<CompletableFuture<Boolean>> confirms = new ConcurrentLinkedQueue<>();
+        OfflinePipeline.Step<Integer> pass = item -> CompletableFuture.completedFuture(true);
+        List<OfflinePipeline.Step<Integer>> steps = List.of(
+                item -> {
+                    started.incrementAndGet();
+                    return CompletableFuture.completedFuture(true);
+                },
+                pass,
+                pass,
+                item -> {
+                    CompletableFuture<Boolean> confirm = new CompletableFuture<>();
+                    confirms.add(confirm);
+                    return confirm;
+                });
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(pipeline.run(i, steps));
+        }
+        // 每个阶段一个执行、一个排队，第一阶段还有一个执行完被挡住的
+        waitUntil(() -> started.get() == 7);
+        Thread.sleep(100);
+        assertEquals(7, started.get());
+        assertEquals(1, confirms.size());
+
+        // 逐个放行最后一阶段，全部商品依次完成
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!results.stream().allMatch(CompletableFuture::isDone) && System.nanoTime() < deadline) {
+            CompletableFuture<Boolean> confirm = confirms.poll();
+            if (confirm != null) {
+                confirm.complete(true);
+            } else {
+                Thread.sleep(1);
+            }
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(20, started.get());
+    }
+
+    @Test
+    void falseOrFailureSkipsLaterStages() {
+        OfflinePipeline pipeline = newPipeline(2, 2);
+        AtomicInteger sent = new AtomicInteger();
+        OfflinePipeline.Step<Integer> pass = item -> CompletableFuture.completedFuture(true);
+        List<OfflinePipeline.Step<Integer>> steps = List.of(
+                pass,
+                item -> {
+                    if (item == 1) {
+                        throw new IllegalStateException("precheck");
+                    }
+                    return CompletableFuture.completedFuture(item != 0);
+                },
+                item -> {
+                    sent.incrementAndGet();
+                    return CompletableFuture.completedFuture(true);
+                },
+                pass);
+
+        assertEquals(0, pipeline.run(0, steps).join());
+        CompletionException e = assertThrows(CompletionException.class, () -> pipeline.run(1, steps).join());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(0, sent.get());
+        assertEquals(2, pipeline.run(2, steps).join());
+        assertEquals(1, sent.get());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.czx.utils;
+
+import com.czx.config.TemuHttpProperties;
+import com.czx.config.TemuOfflineProperties;
+import com.czx.pojo.temu.ChatMessage;
+import com.czx.pojo.temu.MessageListResult;
+import com.czx.pojo.temu.TemuResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按会话共用的下架结果轮询：查询从游标继续，不会停在一直没有回复的商品上，晚到的回复通过回看补上
+ */
+class OfflineResultPollerTests {
+
+    private static final String MALL = "mall";
+    private static final String PARENT = "parent";
+
+    private final FakeChat chat = new FakeChat();
+    private OfflineResultPoller poller;
+
+    @BeforeEach
+    void setUp() {
+        TemuOfflineProperties properties = new TemuOfflineProperties();
+        properties.setResultPollIntervalMs(10);
+        properties.setResultTimeoutMs(3000);
+        poller = new OfflineResultPoller(chat, new TemuHttpProperties(), properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        poller.stop();
+    }
+
+    @Test
+    void productWithoutReplyDoesNotHideLaterReplies() throws Exception {
+        // 商品1一直没有回复，其后有远超单次翻页上限的消息，商品2的回复在最后
+        chat.add(1, "下架商品 SKC ID：1", true);
+        for (long id = 2; id < 300; id++) {
+            chat.add(id, "其他消息" + id, true);
+        }
+        chat.add(300, "下架商品 SKC ID：2", true);
+        chat.add(301, "您好，SKC ID：2 已下架", true);
+
+        CompletableFuture<OfflineResultPoller.WaitResult> stuck = await("1", 1L);
+        OfflineResultPoller.WaitResult result = await("300", 2L).get(2, TimeUnit.SECONDS);
+
+        assertEquals("您好，SKC ID：2 已下架", result.reply());
+        assertTrue(result.polls() > 0);
+        assertFalse(stuck.isDone());
+    }
+
+    @Test
+    void lateVisibleReplyIsFoundByLookback() throws Exception {
+        chat.add(10, "下架商品 SKC ID：7", true);
+        // 回复的ID已分配但还不可见，其后的消息已可见
+        chat.add(11, "您好，SKC ID：7 已下架", false);
+        for (long id = 12; id < 60; id++) {
+            chat.add(id, "其他消息" + id, true);
+        }
+        CompletableFuture<OfflineResultPoller.WaitResult> future = await("10", 7L);
+        // 等游标越过回复
+        while (chat.reads < 3) {
+            Thread.sleep(5);
+        }
+        chat.show(11);
+
+        assertEquals("您好，SKC ID：7 已下架", future.get(2, TimeUnit.SECONDS).reply());
+    }
+
+    @Test
+    void replyArrivingBeforeRegistrationIsClaimed() throws Exception {
+        chat.add(20, "下架商品 SKC ID：8", true);
+        chat.add(21, "下架商品 SKC ID：9", true);
+        chat.add(22, "您好，SKC ID：9 已下架", true);
+        CompletableFuture<OfflineResultPoller.WaitResult> first = await("20", 8L);
+        while (chat.reads < 2) {
+            Thread.sleep(5);
+        }
+        // 商品9登记前回复已被解析
+        OfflineResultPoller.WaitResult second = await("21", 9L).get(2, TimeUnit.SECONDS);
+
+        assertEquals("您好，SKC ID：9 已下架", second.reply());
+        assertEquals(0, second.polls());
+        assertFalse(first.isDone());
+    }
+
+    private CompletableFuture<OfflineResultPoller.WaitResult> await(String anchorMsgId, Long skcId) {
+        return poller.await(MALL, PARENT, "cookie", "origin", anchorMsgId, skcId);
+    }
+
+    /**
+     * 模拟的客服会话：按消息ID向后分页返回可见的消息
+     */
+    private static final class FakeChat extends NetworkRequest {
+        private final Map<Long, Message> messages = new ConcurrentSkipListMap<>();
+        volatile int reads;
+
+        FakeChat() {
+            super(null, null, null, null, null, null);
+        }
+
+        void add(long msgId, String content, boolean visible) {
+            messages.put(msgId, new Message(content, visible));
+        }
+
+        void show(long msgId) {
+            messages.computeIfPresent(msgId, (id, message) -> new Message(message.content, true));
+        }
+
+        @Override
+        public <R> CompletableFuture<TemuResponse<R>> postAsync(String url, Map<String, Object> data, String cookie,
+                                                                String mallid, String origin, Class<R> resultType) {
+            long after = Long.parseLong((String) data.get("msgId"));
+            int limit = (Integer) data.get("limit");
+            List<ChatMessage> page = messages.entrySet().stream()
+                    .filter(entry -> entry.getKey() > after && entry.getValue().visible)
+                    .limit(limit)
+                    .map(entry -> new ChatMessage(String.valueOf(entry.getKey()), 1001, 1, entry.getValue().content))
+                    .toList();
+            reads++;
+            return CompletableFuture.completedFuture(
+                    new TemuResponse<>(true, null, null, null, resultType.cast(new MessageListResult(page))));
+        }
+
+        private record Message(String content, boolean visible) {
+        }
+    }
+}
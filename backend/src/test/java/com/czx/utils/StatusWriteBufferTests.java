@@ -0,0 +1,117 @@
+package com.czx.utils;
+
+import com.czx.config.StatusWriteProperties;
+import com.czx.mapper.ComplianceStatusMapper;
+import com.czx.pojo.ComplianceStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 处理状态的write-behind缓冲：缓冲已满改为同步写库时不能被缓冲中的旧值覆盖
+ */
+class StatusWriteBufferTests {
+
+    private static final int USER_ID = 1;
+
+    // 模拟的状态表：商品 -> 状态
+    private final Map<Long, Integer> table = new HashMap<>();
+    private StatusWriteBuffer buffer;
+
+    @AfterEach
+    void tearDown() {
+        if (buffer != null) {
+            buffer.stop();
+        }
+    }
+
+    private StatusWriteBuffer newBuffer(int maxPending) {
+        StatusWriteProperties properties = new StatusWriteProperties();
+        properties.setWriteBehind(true);
+        properties.setMaxPending(maxPending);
+        properties.setFlushBatchSize(Integer.MAX_VALUE);
+        // 测试中手动落库
+        properties.setFlushIntervalMs(3_600_000);
+        buffer = new StatusWriteBuffer(properties, new TableMapper(), new SimpleMeterRegistry());
+        buffer.start();
+        return buffer;
+    }
+
+    @Test
+    void writeThroughDropsSupersededPendingValues() {
+        StatusWriteBuffer buffer = newBuffer(1);
+        assertTrue(buffer.offer(USER_ID, Map.of(100L, 1)));
+        // 缓冲已满，新值改为同步写库
+        Map<Long, Integer> update = Map.of(100L, 0, 101L, 1);
+        assertFalse(buffer.offer(USER_ID, update));
+        buffer.writeThrough(USER_ID, update.keySet(), () -> table.putAll(update));
+
+        Map<Long, Integer> read = new HashMap<>(table);
+        buffer.overlay(USER_ID, List.of(100L, 101L), read);
+        assertEquals(Map.of(100L, 0, 101L, 1), read);
+
+        buffer.stop();
+        assertEquals(Map.of(100L, 0, 101L, 1), table);
+    }
+
+    @Test
+    void failedWriteThroughKeepsPendingValues() {
+        StatusWriteBuffer buffer = newBuffer(1);
+        assertTrue(buffer.offer(USER_ID, Map.of(100L, 1)));
+        assertThrows(IllegalStateException.class, () -> buffer.writeThrough(USER_ID, List.of(100L), () -> {
+            throw new IllegalStateException("db down");
+        }));
+
+        buffer.stop();
+        assertEquals(Map.of(100L, 1), table);
+    }
+
+    @Test
+    void lastBufferedWriteWins() {
+        StatusWriteBuffer buffer = newBuffer(10);
+        assertTrue(buffer.offer(USER_ID, Map.of(100L, 1)));
+        assertTrue(buffer.offer(USER_ID, Map.of(100L, 0)));
+
+        buffer.stop();
+        assertEquals(Map.of(100L, 0), table);
+    }
+
+    private final class TableMapper implements ComplianceStatusMapper {
+        @Override
+        public void saveOrUpdate(ComplianceStatus status) {
+            table.put(status.getProductId(), status.getStatus());
+        }
+
+        @Override
+        public void saveOrUpdateBatch(Integer userId, List<ComplianceStatus> items) {
+            items.forEach(this::saveOrUpdate);
+        }
+
+        @Override
+        public ComplianceStatus findByUserIdAndProductId(Integer userId, Long productId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ComplianceStatus> findByUserIdAndProductIds(Integer userId, List<Long> productIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long countByUserId(Integer userId) {
+            return table.size();
+        }
+
+        @Override
+        public void streamByUserId(Integer userId, ResultHandler<ComplianceStatus> handler) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.czx.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 带过期时间的内存缓存：加载期间的变更只影响命中的key
+ */
+class TtlCacheTests {
+
+    private record Key(int userId, int page) {
+    }
+
+    private TtlCache<Key, String> newCache() {
+        return new TtlCache<>("test", 60_000, 0, 100, value -> 1, Runnable::run, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void loadSurvivesInvalidationOfOtherUsers() {
+        TtlCache<Key, String> cache = newCache();
+        Key key = new Key(1, 1);
+        // 加载期间另一个用户的状态变化
+        cache.get(key, () -> {
+            cache.invalidate(k -> k.userId() == 2);
+            cache.update(k -> k.userId() == 3, value -> value + "!");
+            return "user1";
+        });
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("user1", cache.get(key, () -> {
+            loads.incrementAndGet();
+            return "reloaded";
+        }));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void loadIsDroppedWhenItsKeyChanges() {
+        TtlCache<Key, String> cache = newCache();
+        Key key = new Key(1, 1);
+        assertEquals("stale", cache.get(key, () -> {
+            cache.invalidate(k -> k.userId() == 1);
+            return "stale";
+        }));
+        assertEquals(0, cache.size());
+        assertEquals("fresh", cache.get(key, () -> "fresh"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void changesBeforeALoadStartsDoNotAffectIt() {
+        TtlCache<Key, String> cache = newCache();
+        cache.invalidate(k -> true);
+        cache.get(new Key(1, 1), () -> "value");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOverWeight() {
+        TtlCache<Key, String> cache = new TtlCache<>("lru", 60_000, 0, 2, value -> 1, Runnable::run, new SimpleMeterRegistry());
+        cache.put(new Key(1, 1), "a");
+        cache.put(new Key(1, 2), "b");
+        cache.getIfPresent(new Key(1, 1));
+        cache.put(new Key(1, 3), "c");
+        assertNotNull(cache.getIfPresent(new Key(1, 1)));
+        assertNull(cache.getIfPresent(new Key(1, 2)));
+        assertNotNull(cache.getIfPresent(new Key(1, 3)));
+    }
+}
@@ -0,0 +1,59 @@
+package com.czx.utils;
+
+import com.czx.config.TemuLimiterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 店铺限流器：等待并发名额超时的请求立即移出队列
+ */
+class UpstreamRateLimiterTests {
+
+    private static final String MALL = "mall";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void timedOutWaiterLeavesTheQueue() {
+        TemuLimiterProperties properties = new TemuLimiterProperties();
+        properties.setInitialConcurrency(1);
+        properties.setMaxConcurrency(1);
+        properties.setPermitsPerSecond(0);
+        properties.setAcquireTimeoutMs(50);
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(properties, scheduler, new SimpleMeterRegistry());
+
+        UpstreamRateLimiter.Permit held = limiter.acquire(MALL).join();
+        CompletableFuture<UpstreamRateLimiter.Permit> queued = limiter.acquire(MALL);
+        assertEquals(1, waiting(limiter));
+        assertThrows(CompletionException.class, queued::join);
+
+        // 在途请求还没结束，超时的等待已不在队列中
+        assertEquals(0, waiting(limiter));
+        held.release(UpstreamRateLimiter.Outcome.SUCCESS);
+        assertTrue(limiter.hasHeadroom(MALL));
+        assertEquals(0, snapshot(limiter).get("inflight"));
+    }
+
+    private static int waiting(UpstreamRateLimiter limiter) {
+        return (int) snapshot(limiter).get("waiting");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> snapshot(UpstreamRateLimiter limiter) {
+        return (Map<String, Object>) limiter.snapshot().get(MALL);
+    }
+}
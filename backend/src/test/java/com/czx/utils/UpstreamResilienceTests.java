@@ -0,0 +1,95 @@
+package com.czx.utils;
+
+import com.czx.config.TemuLimiterProperties;
+import com.czx.config.TemuResilienceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 重试与熔断的行为
+ */
+class UpstreamResilienceTests {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final UpstreamResilience resilience = new UpstreamResilience(new TemuResilienceProperties(), scheduler, new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void attemptThrowingSynchronouslyFailsTheFuture() {
+        CompletableFuture<UpstreamResponse<String>> result = resilience.execute(TemuEndpoint.SEND_MESSAGE, "m1", () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletionException e = assertThrows(CompletionException.class, () -> result.orTimeout(2, TimeUnit.SECONDS).join());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+
+        CompletableFuture<String> polled = resilience.poll(() -> {
+            throw new IllegalStateException("boom");
+        }, 3, 0, 10);
+        assertThrows(CompletionException.class, () -> polled.orTimeout(2, TimeUnit.SECONDS).join());
+    }
+
+    @Test
+    void limiterTimeoutsDoNotOpenTheBreakerOrRetry() {
+        // 并发上限1，第一个许可一直占用，其余请求排队等待并发名额直到超时
+        TemuLimiterProperties limiterProperties = new TemuLimiterProperties();
+        limiterProperties.setInitialConcurrency(1);
+        limiterProperties.setMaxConcurrency(1);
+        limiterProperties.setPermitsPerSecond(0);
+        limiterProperties.setAcquireTimeoutMs(30);
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(limiterProperties, scheduler, new SimpleMeterRegistry());
+        UpstreamRateLimiter.Permit held = limiter.acquire("m2").join();
+
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<CompletableFuture<UpstreamResponse<String>>> attempt = () -> {
+            attempts.incrementAndGet();
+            return limiter.acquire("m2").thenApply(permit -> {
+                permit.release(UpstreamRateLimiter.Outcome.SUCCESS);
+                return new UpstreamResponse<>(200, "ok", false);
+            });
+        };
+        List<CompletableFuture<UpstreamResponse<String>>> queued = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            // 只读接口，失败时本应重试
+            queued.add(resilience.execute(TemuEndpoint.QUERY_MESSAGE, "m2", attempt));
+        }
+        for (CompletableFuture<UpstreamResponse<String>> future : queued) {
+            CompletionException e = assertThrows(CompletionException.class, () -> future.orTimeout(2, TimeUnit.SECONDS).join());
+            assertInstanceOf(UpstreamRateLimiter.AcquireTimeoutException.class, e.getCause());
+        }
+        assertEquals(40, attempts.get());
+
+        held.release(UpstreamRateLimiter.Outcome.SUCCESS);
+        UpstreamResponse<String> ok = resilience.execute(TemuEndpoint.QUERY_MESSAGE, "m2", attempt).join();
+        assertEquals("ok", ok.getBody());
+    }
+
+    @Test
+    void upstreamFailuresOpenTheBreaker() {
+        for (int i = 0; i < 20; i++) {
+            resilience.<String>execute(TemuEndpoint.SEND_MESSAGE, "m3",
+                    () -> CompletableFuture.completedFuture(new UpstreamResponse<>(503, null, false))).join();
+        }
+        CompletableFuture<UpstreamResponse<String>> blocked = resilience.execute(TemuEndpoint.SEND_MESSAGE, "m3",
+                () -> CompletableFuture.completedFuture(new UpstreamResponse<>(200, "ok", false)));
+        CompletionException e = assertThrows(CompletionException.class, blocked::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+}
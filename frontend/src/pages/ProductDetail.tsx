@@ -5,6 +5,7 @@ import { CopyOutlined } from "@ant-design/icons";
 import { useGlobalNotification } from './GlobalNotification';
 import { useUnpublishedRecords } from '../contexts/UnpublishedRecordsContext';
 import { useAuth } from "../contexts/AuthContext";
+import { postWithETag } from "../utils/conditionalFetch";
 
 // 支持通过props传递spu_id、violationData和onClose
 const ProductDetail: React.FC<{ spu_id?: string, violationData?: any, onClose?: () => void }> = ({ spu_id: propSpuId, violationData: propViolationData, onClose }) => {
@@ -58,15 +59,8 @@ const ProductDetail: React.FC<{ spu_id?: string, violationData?: any, onClose?:
     const keyword = typeof name === "string" ? name : searchName;
     if (!keyword) return;
     setRelatedLoading(true);
-    const res = await fetch("/api/temu/seller/product", {
-      method: "POST",
-      headers: { 
-        "Content-Type": "application/json",
-        "token": `${token}`
-      },
-      body: JSON.stringify({ productName: keyword }),
-    });
-    const data = await res.json();
+    // 重复搜索时带上ETag，结果未变化则沿用上次的数据
+    const data = await postWithETag("/api/temu/seller/product", token, { productName: keyword });
     if (data.code === 1 && data.data) setRelated(data.data);
     else message.error(data.msg || "关联搜索失败");
     setRelatedLoading(false);
@@ -89,48 +89,26 @@ const ProductList: React.FC = () => {
       params.append('violation_type', violationType.toString());
     }
     
-    const res = await fetch(`/api/temu/compliance/list?${params.toString()}`, {
+    // 当页商品和总数由同一个接口返回
+    const res = await fetch(`/api/temu/compliance/page?${params.toString()}`, {
       headers: {
         "token": `${token}`
       }
     });
     const data = await res.json();
     if (data.code === 1 && data.data) {
-      setProducts(data.data.items || data.data); // 兼容返回结构
+      setProducts(data.data.items || []);
+      setTotal(data.data.total || 0);
     } else {
       message.error(data.msg || "获取商品失败");
     }
     setLoading(false);
   };
 
-  const fetchTotal = async (pageNum = page, size = pageSize) => {
-    // 构建查询参数
-    const params = new URLSearchParams({
-      page: pageNum.toString(),
-      page_size: size.toString()
-    });
-    
-    // 如果选择了违规类型，添加到参数中
-    if (violationType) {
-      params.append('violation_type', violationType.toString());
-    }
-    
-    const res = await fetch(`/api/temu/compliance/total?${params.toString()}`, {
-      headers: {
-        "token": `${token}`
-      }
-    });
-    const data = await res.json();
-    if (data.code === 1 && data.data) {
-      setTotal(data.data.total || data.data || 8000);
-    }
-  };
-
   // 首次挂载时自动加载一次数据和违规描述选项
   useEffect(() => {
     if (products.length === 0) {
       fetchProducts(page, pageSize);
-      fetchTotal(page, pageSize);
     }
 
     // 获取违规描述选项
@@ -143,12 +121,31 @@ const ProductList: React.FC = () => {
     // 只有在组件已经初始化后才重新获取数据
     if (products.length > 0) {
       fetchProducts(page, pageSize);
-      fetchTotal(page, pageSize);
     }
     // eslint-disable-next-line
   }, [violationType]);
 
   // 批量下架
+  // 每2秒查询一次异步下架任务，直到任务结束
+  const waitOfflineJob = async (jobId: number, total: number): Promise<any> => {
+    message.loading(`正在下架 ${total} 个SKC...`, 0);
+    for (;;) {
+      await new Promise(resolve => setTimeout(resolve, 2000));
+      const res = await fetch(`/api/temu/seller/offline/jobs/${jobId}`, {
+        headers: { "token": `${token}` }
+      });
+      const data = await res.json();
+      if (data.code !== 1 || !data.data) {
+        throw new Error(data.msg || "查询下架任务失败");
+      }
+      if (data.data.finished) {
+        return data.data;
+      }
+      message.destroy();
+      message.loading(`正在下架：${data.data.successCount + data.data.failedCount} / ${data.data.total}`, 0);
+    }
+  };
+
   const handleOffline = async () => {
     if (selectedRowKeys.length === 0) {
       message.warning("请先选择要下架的商品");
@@ -173,10 +170,15 @@ const ProductList: React.FC = () => {
       if (productData.code === 1) {
         // 提取所有skcId
         const allSkcIds: string[] = [];
+        // skcId到违规商品spu_id的映射，后端据此把下架成功的商品标记为已处理
+        const spuIds: Record<string, string> = {};
         if (Array.isArray(productData.data)) {
           productData.data.forEach((product: any) => {
             if (product.productSkcId) {
               allSkcIds.push(product.productSkcId);
+              if (product.productId) {
+                spuIds[product.productSkcId] = product.productId;
+              }
             }
           });
         }
@@ -186,9 +188,8 @@ const ProductList: React.FC = () => {
           return;
         }
 
-        // 第二步：批量下架这些skcId
-        message.loading(`正在下架 ${allSkcIds.length} 个SKC...`, 0);
-        const res = await fetch("/api/temu/seller/offline", {
+        // 第二步：提交异步下架任务，后台逐个下架
+        const res = await fetch("/api/temu/seller/offline/jobs", {
           method: "POST",
           headers: {
             "Content-Type": "application/json",
@@ -196,77 +197,57 @@ const ProductList: React.FC = () => {
           },
           body: JSON.stringify({
             productIds: allSkcIds,  // 传递skcId列表
-            max_threads: 8  // 批量下架使用更多线程
+            max_threads: 8,  // 批量下架使用更多线程
+            spu_ids: spuIds
           }),
         });
         const data = await res.json();
-        message.destroy(); // 清除loading消息
 
         if (data.code === 1 && data.data) {
-          // 显示详细的下架结果
-          const successCount = data.data.summary?.success || 0;
-          const failCount = data.data.summary?.failed || 0;
-          const totalCount = data.data.summary?.total || 0;
+          // 第三步：轮询任务进度直到结束
+          const job = await waitOfflineJob(data.data.jobId, allSkcIds.length);
+          message.destroy(); // 清除进度消息
+
+          // 失败的商品按需查询，不随进度一起返回
+          let failedItems: any[] = [];
+          if (job.failedCount > 0) {
+            const itemsRes = await fetch(`/api/temu/seller/offline/jobs/${job.jobId}/items?status=FAILED&page=1&page_size=100`, {
+              headers: { "token": `${token}` }
+            });
+            const itemsData = await itemsRes.json();
+            if (itemsData.code === 1 && itemsData.data) {
+              failedItems = itemsData.data.rows || [];
+            }
+          }
 
           notify({
-            type: 'info',
-            message: "批量下架完成",
+            type: job.status === 'FAILED' ? 'error' : 'info',
+            message: job.status === 'COMPLETED' ? "批量下架完成" : job.status === 'CANCELLED' ? "批量下架已取消" : "批量下架中断",
             description: (
               <div>
                 <div style={{ marginBottom: 12 }}>
-                  <span style={{ color: 'green' }}>下架成功：{successCount} 个</span>
-                  <span style={{ color: 'red', marginLeft: 16 }}>下架失败：{failCount} 个</span>
-                  <span style={{ color: 'blue', marginLeft: 16 }}>总计：{totalCount} 个</span>
+                  <span style={{ color: 'green' }}>下架成功：{job.successCount} 个</span>
+                  <span style={{ color: 'red', marginLeft: 16 }}>下架失败：{job.failedCount} 个</span>
+                  <span style={{ color: 'blue', marginLeft: 16 }}>总计：{job.total} 个</span>
                 </div>
-                {data.data.results && data.data.results.map((item: any) => (
+                {job.error && (
+                  <div style={{ marginBottom: 8, color: 'red' }}>{job.error}</div>
+                )}
+                {failedItems.map((item: any) => (
                   <div key={item.productId} style={{ marginBottom: 8, fontSize: '13px' }}>
-                    SKC ID: {item.productId} - {item.success ? (
-                      <span style={{ color: 'green' }}>{item.message}</span>
-                    ) : (
-                      <span style={{ color: 'red' }}>{item.message}</span>
-                    )}
+                    SKC ID: {item.productId} - <span style={{ color: 'red' }}>{item.message}</span>
                   </div>
                 ))}
               </div>
             ) as any,
           });
 
-          // 标记选中商品为已处理
-          try {
-            const markProcessedPromises = selectedRowKeys.map(async (key) => {
-              const spuId = key.toString().split('_')[0];
-              const product = products.find(p => p.spu_id == spuId);
-              if (product && product.processed_status !== 1) {
-                const res = await fetch(`/api/temu/compliance/status`, {
-                  method: "POST",
-                  headers: {
-                    "Content-Type": "application/json",
-                    "token": `${token}`
-                  },
-                  body: JSON.stringify({
-                    productId: spuId,
-                    status: 1
-                  })
-                });
-                const data = await res.json();
-                if (data.code === 1) {
-                  return spuId;
-                }
-              }
-              return null;
-            });
-            
-            const processedIds = await Promise.all(markProcessedPromises);
-            const validProcessedIds = processedIds.filter(id => id !== null);
-            
-            if (validProcessedIds.length > 0) {
-              // 更新本地数据状态
-              setProducts(products.map(item =>
-                validProcessedIds.includes(item.spu_id) ? { ...item, processed_status: 1 } : item
-              ));
-            }
-          } catch (error) {
-            console.error("标记处理状态失败:", error);
+          // 下架成功的商品已由后端批量标记为已处理
+          const processedIds: string[] = (job.processedSpuIds || []).map((id: any) => id.toString());
+          if (processedIds.length > 0) {
+            setProducts(products.map(item =>
+              processedIds.includes(item.spu_id.toString()) ? { ...item, processed_status: 1 } : item
+            ));
           }
 
           // 刷新列表并清空选择
@@ -545,10 +526,7 @@ const ProductList: React.FC = () => {
 
         {/* 添加按钮 */}
         <div style={{ display: 'flex', flexDirection: 'row', alignItems: 'center', justifyContent: 'flex-end', gap: 16 }}> 
-          <Button type="primary" onClick={() => {
-            fetchProducts(page, pageSize);
-            fetchTotal(page, pageSize);
-          }} loading={loading}>
+          <Button type="primary" onClick={() => fetchProducts(page, pageSize)} loading={loading}>
             刷新
           </Button>
           <Button
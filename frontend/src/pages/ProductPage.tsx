@@ -5,6 +5,7 @@ import { useGlobalNotification } from './GlobalNotification';
 import { useUnpublishedRecords } from '../contexts/UnpublishedRecordsContext';
 import { useProductSearchContext } from './ProductSearchContext';
 import { useAuth } from "../contexts/AuthContext";
+import { postWithETag } from "../utils/conditionalFetch";
 
 interface Product {
   productId: string;
@@ -53,15 +54,8 @@ const ProductPage: React.FC = () => {
       setLoading(false);
       return;
     }
-    const res = await fetch("/api/temu/seller/product", {
-      method: "POST",
-      headers: { 
-        "Content-Type": "application/json",
-        "token": `${token}`
-      },
-      body: JSON.stringify(body),
-    });
-    const data = await res.json();
+    // 重复查询时带上ETag，结果未变化则沿用上次的数据
+    const data = await postWithETag("/api/temu/seller/product", token, body);
     if (data.code === 1 && data.data) {
       setProducts(data.data);
 
@@ -0,0 +1,35 @@
+// POST查询接口的条件请求：浏览器不会缓存POST响应，这里记住每个查询上次的ETag和结果
+// 服务端内容未变化时返回304，直接沿用上次的结果
+const MAX_ENTRIES = 50;
+const cache = new Map<string, { etag: string; data: any }>();
+
+export const postWithETag = async (url: string, token: string | null, body: unknown): Promise<any> => {
+  const payload = JSON.stringify(body);
+  const key = `${token}|${url}|${payload}`;
+  const cached = cache.get(key);
+  const headers: Record<string, string> = {
+    "Content-Type": "application/json",
+    "token": `${token}`
+  };
+  if (cached) {
+    headers["If-None-Match"] = cached.etag;
+  }
+  const res = await fetch(url, { method: "POST", headers, body: payload });
+  if (res.status === 304 && cached) {
+    return cached.data;
+  }
+  const data = await res.json();
+  const etag = res.headers.get("ETag");
+  cache.delete(key);
+  if (etag && data.code === 1) {
+    cache.set(key, { etag, data });
+    // 超出上限时淘汰最早写入的查询
+    if (cache.size > MAX_ENTRIES) {
+      const oldest = cache.keys().next().value;
+      if (oldest !== undefined) {
+        cache.delete(oldest);
+      }
+    }
+  }
+  return data;
+};